@@ -0,0 +1,122 @@
+package vn.bnh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchAssemblyBenchmark {
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    @Param({"5"})
+    public int shards;
+
+    // IDs are generated before each iteration: a live generator caps at 4096 per ms and that cap, not boxing or
+    // grouping, would be all the benchmark measures.
+    private static final int SOURCE_SIZE = 1 << 16;
+
+    private final SnowflakeGenerator generator = new SnowflakeGenerator(1);
+    private final long[] source = new long[SOURCE_SIZE];
+    private int cursor;
+    private String[] shardNames;
+
+    private long[] ids;
+    private ShardBatchGrouper grouper;
+
+    @Setup
+    public void setup() {
+        shardNames = new String[shards];
+        for (int s = 0; s < shards; s++) shardNames[s] = "sh" + (s + 1);
+
+        ids = new long[batchSize];
+        grouper = new ShardBatchGrouper(this::route, batchSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void generateIds() {
+        generator.nextIds(source, SOURCE_SIZE);
+        cursor = 0;
+    }
+
+    // The former ProcedureBatchCustomerGenerator path: boxed IDs, map of lists, toArray per shard.
+    @Benchmark
+    public void boxedBatch(Blackhole bh) {
+        int start = nextBatch();
+        List<BigDecimal> batchIds = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batchIds.add(BigDecimal.valueOf(source[start + i]));
+        }
+
+        Map<String, List<BigDecimal>> shardToIds = new LinkedHashMap<>();
+        for (BigDecimal id : batchIds) {
+            String shardName = shardNames[route(id.longValue())];
+            shardToIds.computeIfAbsent(shardName, k -> new ArrayList<>()).add(id);
+        }
+
+        for (List<BigDecimal> group : shardToIds.values()) {
+            bh.consume(group.get(0));
+            bh.consume(group.toArray(new BigDecimal[0]));
+        }
+    }
+
+    // The current path: ShardBatchGrouper itself, behind the same stub router as boxedBatch.
+    @Benchmark
+    public void primitiveBatch(Blackhole bh) throws Exception {
+        System.arraycopy(source, nextBatch(), ids, 0, batchSize);
+        grouper.group(ids, batchSize);
+
+        for (int g = 0; g < grouper.groups(); g++) {
+            bh.consume(grouper.ids(g)[0]);
+            bh.consume(grouper.count(g));
+        }
+    }
+
+    @Benchmark
+    public void boxKeys(Blackhole bh) {
+        int start = nextBatch();
+        for (int i = 0; i < batchSize; i++) bh.consume(BigDecimal.valueOf(source[start + i]));
+    }
+
+    @Benchmark
+    public void primitiveKeys(Blackhole bh) {
+        int start = nextBatch();
+        for (int i = 0; i < batchSize; i++) bh.consume(source[start + i]);
+    }
+
+    // Offset of the next batchSize pre-generated IDs, wrapping before the end of the source array.
+    private int nextBatch() {
+        if (cursor + batchSize > SOURCE_SIZE) cursor = 0;
+        int start = cursor;
+        cursor += batchSize;
+        return start;
+    }
+
+    // Stub router: a fixed hash instead of the routing cache, so both paths pay the same lookup cost.
+    private int route(long key) {
+        return (int) Math.floorMod(Long.hashCode(key) * 0x9E3779B9L, (long) shards);
+    }
+}
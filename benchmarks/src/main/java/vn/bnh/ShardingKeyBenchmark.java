@@ -0,0 +1,55 @@
+package vn.bnh;
+
+import oracle.jdbc.OracleType;
+import oracle.ucp.jdbc.PoolDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardingKeyBenchmark {
+
+    // Pre-generated per iteration so the generator's 4096-per-ms cap does not mask the key-building cost.
+    private static final int SOURCE_MASK = (1 << 16) - 1;
+
+    private final SnowflakeGenerator generator = new SnowflakeGenerator(1);
+    private final long[] source = new long[SOURCE_MASK + 1];
+    private int cursor;
+    private PoolDataSource pool;
+
+    @Setup
+    public void setup() throws Exception {
+        pool = StubPoolDataSource.create();
+    }
+
+    @Setup(Level.Iteration)
+    public void generateIds() {
+        generator.nextIds(source, source.length);
+    }
+
+    @Benchmark
+    public Object bigDecimalKey() throws Exception {
+        return DataGeneratorUtils.buildNumberShardingKey(pool, BigDecimal.valueOf(source[cursor++ & SOURCE_MASK]));
+    }
+
+    @Benchmark
+    public Object longKey() throws Exception {
+        return pool.createShardingKeyBuilder().subkey(source[cursor++ & SOURCE_MASK], OracleType.NUMBER).build();
+    }
+}
@@ -0,0 +1,77 @@
+package vn.bnh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnowflakeGeneratorBenchmark {
+
+    private static final int BULK_SIZE = 100;
+
+    private static final long BASE_MS = System.currentTimeMillis();
+    private static final long BASE_NS = System.nanoTime();
+
+    // One logical millisecond per microsecond, so the 4096-per-ms sequence cap sits far above any reachable rate and the
+    // threaded variants measure CAS contention rather than the wait for the next millisecond.
+    private final SnowflakeGenerator generator = new SnowflakeGenerator(1, 100, () -> BASE_MS + (System.nanoTime() - BASE_NS) / 1_000);
+    private final SnowflakeGenerator wallClock = new SnowflakeGenerator(1);
+
+    @State(Scope.Thread)
+    public static class Buffer {
+        final long[] ids = new long[BULK_SIZE];
+    }
+
+    // Reference point: with the real clock one node tops out at 4096 IDs per ms.
+    @Benchmark
+    @Threads(1)
+    public long nextId_wallClock_1() {
+        return wallClock.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextId_1() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long nextId_4() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long nextId_16() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long nextId_64() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void nextIds_16(Buffer buffer, Blackhole bh) {
+        generator.nextIds(buffer.ids, BULK_SIZE);
+        bh.consume(buffer.ids);
+    }
+}
@@ -0,0 +1,20 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+import oracle.ucp.jdbc.PoolDataSourceFactory;
+
+final class StubPoolDataSource {
+
+    private StubPoolDataSource() {
+    }
+
+    // Unstarted UCP data source: sharding keys are built client-side and no
+    // connection is ever requested, so the URL only has to parse.
+    static PoolDataSource create() throws Exception {
+        PoolDataSource pool = PoolDataSourceFactory.getPoolDataSource();
+        pool.setConnectionFactoryClassName("oracle.jdbc.pool.OracleDataSource");
+        pool.setConnectionPoolName("UCP_STUB");
+        pool.setURL("jdbc:oracle:thin:@//localhost:1521/STUB");
+        return pool;
+    }
+}
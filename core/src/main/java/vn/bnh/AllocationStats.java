@@ -0,0 +1,75 @@
+package vn.bnh;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Heap bytes allocated per operation, from HotSpot's per-thread allocation counters.
+final class AllocationStats {
+
+    private static final Logger LOGGER = Logger.getLogger(AllocationStats.class.getName());
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final Map<Long, Long> baseline = new HashMap<>();
+
+    private final LongAdder workerBytes = new LongAdder();
+    private final LongAdder measuredOps = new LongAdder();
+    private final LongAdder ops = new LongAdder();
+
+    private AllocationStats(com.sun.management.ThreadMXBean threads) {
+        this.threads = threads;
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) baseline.put(ids[i], bytes[i]);
+        }
+        MetricsRegistry.gauge("alloc_bytes_per_op", "Heap bytes allocated by the worker thread per operation", this::workerBytesPerOp);
+    }
+
+    // Null when ALLOC_TRACKING=false or the JVM has no per-thread allocation counters.
+    static AllocationStats start() {
+        if (!Env.getBoolean("ALLOC_TRACKING", true)) return null;
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return null;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) return null;
+        if (!threads.isThreadAllocatedMemoryEnabled()) threads.setThreadAllocatedMemoryEnabled(true);
+        return new AllocationStats(threads);
+    }
+
+    // Negative on virtual threads, whose allocations the counters do not cover.
+    long begin() {
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    void end(long startBytes) {
+        ops.increment();
+        if (startBytes < 0) return;
+        long now = threads.getCurrentThreadAllocatedBytes();
+        if (now < 0) return;
+        workerBytes.add(now - startBytes);
+        measuredOps.increment();
+    }
+
+    // Called after the workers have exited: their bytes come from end(), helper threads (shard executors, writers) still alive add their own.
+    void finish(String mode) {
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        long processBytes = workerBytes.sum();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) processBytes += bytes[i] - baseline.getOrDefault(ids[i], 0L);
+        }
+
+        long total = ops.sum();
+        String workerPerOp = measuredOps.sum() == 0 ? "n/a" : String.valueOf(workerBytesPerOp());
+        LOGGER.log(Level.INFO, "ALLOC mode={0} ops={1} worker_bytes_per_op={2} process_bytes_per_op={3} process_mb={4}", new Object[]{mode, String.valueOf(total), workerPerOp, total == 0 ? "0" : String.valueOf(processBytes / total), String.valueOf(processBytes >> 20)});
+    }
+
+    private long workerBytesPerOp() {
+        long measured = measuredOps.sum();
+        return measured == 0 ? 0 : workerBytes.sum() / measured;
+    }
+}
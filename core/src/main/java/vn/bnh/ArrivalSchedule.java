@@ -0,0 +1,50 @@
+package vn.bnh;
+
+import java.util.concurrent.TimeUnit;
+
+final class ArrivalSchedule {
+
+    private final double startRate;
+    private final double targetRate;
+    private final double rampSeconds;
+    private final double slope;
+    private final double rampOps;
+
+    ArrivalSchedule(double startRate, double targetRate, double rampSeconds) {
+        if (targetRate <= 0 || startRate < 0 || rampSeconds < 0) throw new IllegalArgumentException();
+        this.startRate = rampSeconds == 0 ? targetRate : startRate;
+        this.targetRate = targetRate;
+        this.rampSeconds = rampSeconds;
+        this.slope = rampSeconds == 0 ? 0 : (targetRate - startRate) / rampSeconds;
+        this.rampOps = (this.startRate + targetRate) * rampSeconds / 2;
+    }
+
+    static ArrivalSchedule fromEnv() {
+        double target = Double.parseDouble(Env.get("TARGET_TPS", "0"));
+        if (target <= 0) return null;
+        double start = Double.parseDouble(Env.get("TARGET_TPS_START", String.valueOf(target)));
+        return new ArrivalSchedule(start, target, Env.getLong("RAMP_SECONDS", 0));
+    }
+
+    double targetRate() {
+        return targetRate;
+    }
+
+    // Offset of the i-th arrival from the start of the run: the inverse of the cumulative arrival count.
+    long intendedOffsetNanos(long i) {
+        double seconds;
+        if (i >= rampOps) {
+            seconds = rampSeconds + (i - rampOps) / targetRate;
+        } else if (slope == 0) {
+            seconds = i / startRate;
+        } else {
+            seconds = (Math.sqrt(startRate * startRate + 2 * slope * i) - startRate) / slope;
+        }
+        return (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    long arrivalsWithin(double seconds) {
+        if (seconds <= rampSeconds) return (long) Math.ceil(startRate * seconds + slope * seconds * seconds / 2);
+        return (long) Math.ceil(rampOps + (seconds - rampSeconds) * targetRate);
+    }
+}
@@ -0,0 +1,195 @@
+package vn.bnh;
+
+import oracle.jdbc.OraclePreparedStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// One connection with up to ASYNC_IN_FLIGHT autocommit inserts outstanding, sent through the driver's
+// executeUpdateAsyncOracle so the worker does not wait a round trip per row. Each in-flight slot owns its
+// own statement because a statement cannot be re-executed before its previous execution completes.
+public final class AsyncStatementPipeline implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncStatementPipeline.class.getName());
+
+    private static final AtomicInteger OPEN = new AtomicInteger();
+    private static final AtomicInteger PEAK_OPEN = new AtomicInteger();
+    private static final LongAdder SUBMITTED = new LongAdder();
+    private static final LongAdder COMPLETED = new LongAdder();
+    private static final LongAdder FAILED = new LongAdder();
+    private static final LongAdder IN_FLIGHT = new LongAdder();
+
+    static {
+        MetricsRegistry.gauge("async_in_flight", "Asynchronous executions sent and not yet completed", IN_FLIGHT::sum);
+        MetricsRegistry.counter("async_completed_total", "Asynchronous executions completed", COMPLETED::sum);
+        MetricsRegistry.counter("async_failed_total", "Asynchronous executions completed with an error", FAILED::sum);
+    }
+
+    private final String mode;
+    private final Connection conn;
+    private final WrittenKeyStore keys;
+    private final int inFlight;
+    private final BlockingQueue<Slot> free;
+    private volatile boolean broken;
+
+    public AsyncStatementPipeline(String mode, Connection conn, String sql, int inFlight, WrittenKeyStore keys) throws SQLException {
+        if (inFlight <= 0) throw new IllegalArgumentException();
+        this.mode = mode;
+        this.conn = conn;
+        this.keys = keys;
+        this.inFlight = inFlight;
+        this.free = new ArrayBlockingQueue<>(inFlight);
+
+        conn.setAutoCommit(true);
+        try {
+            for (int i = 0; i < inFlight; i++) {
+                PreparedStatement ps = conn.prepareStatement(sql);
+                try {
+                    free.add(new Slot(ps));
+                } catch (SQLException e) {
+                    ps.close();
+                    throw e;
+                }
+            }
+        } catch (SQLException e) {
+            closeStatements();
+            throw e;
+        }
+        PEAK_OPEN.accumulateAndGet(OPEN.incrementAndGet(), Math::max);
+    }
+
+    public static int inFlightFromEnv() {
+        return Env.getInt("ASYNC_IN_FLIGHT", 8);
+    }
+
+    // Blocks only while every slot is busy; key is recorded as written once its execution completes (0 skips it).
+    public void submit(long key, KeyBinder binder) throws Exception {
+        Slot slot = free.take();
+        try {
+            binder.bind(slot.ps, key);
+            slot.key = key;
+            slot.startNs = System.nanoTime();
+            Flow.Publisher<Long> result = slot.oracle.executeUpdateAsyncOracle();
+            IN_FLIGHT.increment();
+            SUBMITTED.increment();
+            result.subscribe(slot);
+        } catch (Exception e) {
+            broken = true;
+            free.add(slot);
+            throw e;
+        }
+    }
+
+    // Set after any failed execution; the owner should drain, close and open a new pipeline.
+    public boolean broken() {
+        return broken;
+    }
+
+    // Waits for outstanding executions by taking every slot back, then returns them.
+    public void drain() throws InterruptedException {
+        long deadlineNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Env.getLong("ASYNC_DRAIN_TIMEOUT_MS", 30_000));
+        Slot[] held = new Slot[inFlight];
+        int taken = 0;
+        while (taken < inFlight) {
+            Slot slot = free.poll(deadlineNs - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (slot == null) {
+                LOGGER.log(Level.WARNING, "ASYNC_DRAIN_TIMEOUT mode={0} outstanding={1}", new Object[]{mode, inFlight - taken});
+                break;
+            }
+            held[taken++] = slot;
+        }
+        for (int i = 0; i < taken; i++) free.add(held[i]);
+    }
+
+    @Override
+    public void close() {
+        OPEN.decrementAndGet();
+        try {
+            drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeStatements();
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    // Per-connection throughput is the figure to compare with the synchronous modes' THROUGHPUT line; connections is the
+    // peak open at once, so pipelines reopened after a failure are not counted twice.
+    public static void logSummary(String mode, int inFlight, long elapsedNs) {
+        long connections = PEAK_OPEN.get();
+        long completed = COMPLETED.sum();
+        double seconds = elapsedNs / 1e9;
+        LOGGER.log(Level.INFO, "ASYNC_SUMMARY mode={0} connections={1} in_flight_per_connection={2} submitted={3} completed={4} failed={5} ops_s={6} ops_s_per_connection={7}", new Object[]{mode, String.valueOf(connections), inFlight, String.valueOf(SUBMITTED.sum()), String.valueOf(completed), String.valueOf(FAILED.sum()), String.valueOf(Math.round(completed / seconds)), connections == 0 ? "0" : String.valueOf(Math.round(completed / seconds / connections))});
+    }
+
+    private void closeStatements() {
+        for (Slot slot : free) {
+            try {
+                slot.ps.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface KeyBinder {
+        void bind(PreparedStatement ps, long key) throws SQLException;
+    }
+
+    // Reused for every execution on its statement, so completions allocate nothing on our side.
+    private final class Slot implements Flow.Subscriber<Long> {
+        final PreparedStatement ps;
+        final OraclePreparedStatement oracle;
+        long key;
+        long startNs;
+
+        Slot(PreparedStatement ps) throws SQLException {
+            this.ps = ps;
+            this.oracle = ps.unwrap(OraclePreparedStatement.class);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Long rows) {
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            broken = true;
+            FAILED.increment();
+            release();
+            RunErrors.record(LOGGER, mode, error);
+        }
+
+        @Override
+        public void onComplete() {
+            RunMetrics.EXECUTE.recordSince(startNs);
+            COMPLETED.increment();
+            RunMetrics.rowsWritten(1);
+            if (keys != null && key != 0) keys.record(key);
+            RunErrors.succeeded();
+            release();
+        }
+
+        private void release() {
+            IN_FLIGHT.decrement();
+            free.add(this);
+        }
+    }
+}
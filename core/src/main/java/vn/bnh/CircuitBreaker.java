@@ -0,0 +1,105 @@
+package vn.bnh;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class CircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAtNs = new AtomicLong();
+
+    private final LongAdder opens = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    private CircuitBreaker(String name, int failureThreshold, long openMs) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+    }
+
+    public static CircuitBreaker forName(String name) {
+        return BREAKERS.computeIfAbsent(name, n -> {
+            CircuitBreaker breaker = new CircuitBreaker(n, Env.getInt("CB_FAILURE_THRESHOLD", 5), Env.getLong("CB_OPEN_MS", 5_000));
+            MetricsRegistry.gauge("circuit_state", "Circuit breaker state: 0 closed, 1 open, 2 half-open", breaker.state::get, "name", n);
+            MetricsRegistry.counter("circuit_opens_total", "Times the circuit breaker opened", breaker.opens::sum, "name", n);
+            return breaker;
+        });
+    }
+
+    public static void logStats(String mode) {
+        for (CircuitBreaker breaker : BREAKERS.values()) {
+            LOGGER.log(Level.INFO, "CIRCUIT_STATS mode={0} name={1} state={2} opens={3} shed={4}", new Object[]{mode, breaker.name, breaker.stateName(), breaker.opens.sum(), breaker.shed.sum()});
+        }
+    }
+
+    // True when the caller is the single HALF_OPEN probe and must settle it with onSuccess, onFailure or releaseProbe.
+    public boolean acquire() throws CircuitOpenException {
+        int s = state.get();
+        if (s == CLOSED) return false;
+
+        // After the open interval exactly one caller is let through as a probe.
+        if (s == OPEN && System.nanoTime() - openedAtNs.get() >= openNanos && state.compareAndSet(OPEN, HALF_OPEN)) return true;
+
+        shed.increment();
+        throw new CircuitOpenException(name);
+    }
+
+    // The probe ended with an error that says nothing about the target's health; reopen so a later caller probes again.
+    public void releaseProbe() {
+        openedAtNs.set(System.nanoTime());
+        state.compareAndSet(HALF_OPEN, OPEN);
+    }
+
+    public void onSuccess() {
+        if (consecutiveFailures.get() != 0) consecutiveFailures.set(0);
+        if (state.get() != CLOSED && state.getAndSet(CLOSED) != CLOSED) {
+            LOGGER.log(Level.WARNING, "CIRCUIT_CLOSED name={0}", name);
+        }
+    }
+
+    public void onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        int s = state.get();
+        if (s == HALF_OPEN || (s == CLOSED && failures >= failureThreshold)) {
+            openedAtNs.set(System.nanoTime());
+            if (!state.compareAndSet(s, OPEN)) return;
+            opens.increment();
+            LOGGER.log(Level.WARNING, "CIRCUIT_OPEN name={0} consecutive_failures={1} open_ms={2}", new Object[]{name, failures, TimeUnit.NANOSECONDS.toMillis(openNanos)});
+        }
+    }
+
+    private String stateName() {
+        switch (state.get()) {
+            case OPEN:
+                return "open";
+            case HALF_OPEN:
+                return "half_open";
+            default:
+                return "closed";
+        }
+    }
+
+    public static final class CircuitOpenException extends Exception {
+        CircuitOpenException(String name) {
+            super("circuit open: " + name, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package vn.bnh;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public final class CustomerPayloadGenerator {
+
+    public static final String COLUMNS = "CUST_TYPE, NAME, BIRTH_DATE, SEX, NATIONALITY, VIP, STATUS, AREA_CODE, PROVINCE, DISTRICT, PRECINCT, STREET_BLOCK, STREET, STREET_NAME, STREET_BLOCK_NAME, HOME, ADDRESS, CREATE_USER, CREATE_DATETIME, UPDATE_DATETIME, UPDATE_USER, DESCRIPTION, UPDATE_NUMBER2, LAST_MODIFIED, PARENT_ID";
+    public static final String BIND_MARKERS = "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?";
+    public static final int COLUMN_COUNT = 25;
+    public static final int[] COLUMN_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR, Types.NUMERIC, Types.TIMESTAMP, Types.NUMERIC};
+
+    private static final ThreadLocal<Object[]> ROW = ThreadLocal.withInitial(() -> new Object[COLUMN_COUNT]);
+
+    private static final String[] FAMILY = {"Nguyễn", "Trần", "Lê", "Phạm", "Hoàng", "Huỳnh", "Phan", "Vũ", "Võ", "Đặng", "Bùi", "Đỗ", "Hồ", "Ngô", "Dương", "Lý"};
+    private static final String[] MIDDLE = {"Văn", "Thị", "Hữu", "Đức", "Minh", "Ngọc", "Thanh", "Quốc", "Gia", "Xuân", "Hoài", "Thu"};
+    private static final String[] GIVEN = {"An", "Bình", "Chi", "Dũng", "Giang", "Hà", "Hải", "Hạnh", "Hiếu", "Hoa", "Hùng", "Huy", "Khánh", "Lan", "Linh", "Long", "Mai", "Nam", "Nga", "Phong", "Phúc", "Quân", "Quỳnh", "Sơn", "Tâm", "Thảo", "Trang", "Tú", "Tuấn", "Vy", "Yến"};
+    private static final String[][] PROVINCES = {{"HNI", "Thành phố Hà Nội"}, {"HCM", "Thành phố Hồ Chí Minh"}, {"DNG", "Thành phố Đà Nẵng"}, {"HPG", "Thành phố Hải Phòng"}, {"CTO", "Thành phố Cần Thơ"}, {"QNH", "Tỉnh Quảng Ninh"}, {"NAN", "Tỉnh Nghệ An"}, {"THA", "Tỉnh Thanh Hóa"}, {"KHA", "Tỉnh Khánh Hòa"}, {"DLK", "Tỉnh Đắk Lắk"}, {"BDG", "Tỉnh Bình Dương"}, {"DNI", "Tỉnh Đồng Nai"}};
+    private static final String[] WARDS = {"Bồ Đề", "Hoàn Kiếm", "Ba Đình", "Cầu Giấy", "Tây Hồ", "Long Biên", "Bến Nghé", "Thảo Điền", "Hải Châu", "Ngô Quyền", "Ninh Kiều", "Hạ Long", "Vinh Tân", "Đông Vệ", "Lộc Thọ", "Tân Lợi"};
+    private static final String[] STREETS = {"Nguyễn Văn Cừ", "Lê Lợi", "Trần Hưng Đạo", "Hai Bà Trưng", "Lý Thường Kiệt", "Phan Chu Trinh", "Hùng Vương", "Điện Biên Phủ", "Nguyễn Huệ", "Bạch Đằng"};
+
+    private final String[] names;
+    private final Area[] areas;
+    private final String[] users;
+    private final Timestamp[] birthDates;
+    private final Timestamp[] createDates;
+    private final double[] nameCdf;
+    private final double[] areaCdf;
+    private final double[] userCdf;
+
+    public CustomerPayloadGenerator(int nameCardinality, int areaCardinality, int userCardinality, int dateCardinality, double skew, long seed) {
+        if (nameCardinality <= 0 || areaCardinality <= 0 || userCardinality <= 0 || dateCardinality <= 0 || skew < 0) throw new IllegalArgumentException();
+        Random random = new Random(seed);
+
+        names = new String[nameCardinality];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = FAMILY[random.nextInt(FAMILY.length)] + ' ' + MIDDLE[random.nextInt(MIDDLE.length)] + ' ' + GIVEN[random.nextInt(GIVEN.length)];
+        }
+
+        areas = new Area[areaCardinality];
+        for (int i = 0; i < areas.length; i++) areas[i] = new Area(random);
+
+        users = new String[userCardinality];
+        for (int i = 0; i < users.length; i++) users[i] = "VTT" + (i + 1);
+
+        long now = System.currentTimeMillis();
+        long day = TimeUnit.DAYS.toMillis(1);
+        birthDates = new Timestamp[dateCardinality];
+        createDates = new Timestamp[dateCardinality];
+        for (int i = 0; i < dateCardinality; i++) {
+            birthDates[i] = new Timestamp((now - day * (18 * 365 + random.nextInt(60 * 365))) / day * day);
+            createDates[i] = new Timestamp(now - TimeUnit.SECONDS.toMillis(random.nextInt(3 * 365 * 24 * 3600)));
+        }
+
+        nameCdf = zipfCdf(nameCardinality, skew);
+        areaCdf = zipfCdf(areaCardinality, skew);
+        userCdf = zipfCdf(userCardinality, skew);
+    }
+
+    // Returns null for PAYLOAD=fixed (the default), so callers keep the literal-row SQL.
+    public static CustomerPayloadGenerator fromEnv() {
+        String payload = Env.get("PAYLOAD", "fixed");
+        if ("fixed".equals(payload)) return null;
+        if (!"realistic".equals(payload)) throw new IllegalStateException("Unknown PAYLOAD: " + payload);
+        return configured();
+    }
+
+    public static CustomerPayloadGenerator configured() {
+        return new CustomerPayloadGenerator(Env.getInt("PAYLOAD_NAMES", 50_000), Env.getInt("PAYLOAD_AREAS", 5_000), Env.getInt("PAYLOAD_USERS", 200), Env.getInt("PAYLOAD_DATES", 10_000), Double.parseDouble(Env.get("PAYLOAD_SKEW", "0.99")), Env.getLong("PAYLOAD_SEED", 42));
+    }
+
+    public void bind(PreparedStatement ps, int firstIndex) throws SQLException {
+        Object[] row = ROW.get();
+        fill(row);
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            if (row[c] == null) ps.setNull(firstIndex + c, COLUMN_TYPES[c]);
+            else ps.setObject(firstIndex + c, row[c], COLUMN_TYPES[c]);
+        }
+    }
+
+    // Values in COLUMNS order: String for VARCHAR, Timestamp for TIMESTAMP, null or BigDecimal for NUMERIC.
+    public void fill(Object[] row) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Area area = areas[sample(areaCdf, random)];
+        Timestamp created = createDates[random.nextInt(createDates.length)];
+        String user = users[sample(userCdf, random)];
+        int vip = random.nextInt(100);
+
+        row[0] = vip < 2 ? "DN" : "VIE";
+        row[1] = names[sample(nameCdf, random)];
+        row[2] = birthDates[random.nextInt(birthDates.length)];
+        row[3] = random.nextBoolean() ? "M" : "F";
+        row[4] = "Việt Nam";
+        row[5] = vip < 5 ? "1" : null;
+        row[6] = random.nextInt(50) == 0 ? "0" : "1";
+        row[7] = area.areaCode;
+        row[8] = area.province;
+        row[9] = area.district;
+        row[10] = area.precinct;
+        row[11] = area.streetBlock;
+        row[12] = area.street;
+        row[13] = area.streetName;
+        row[14] = area.streetBlockName;
+        row[15] = area.home;
+        row[16] = area.address;
+        row[17] = user;
+        row[18] = created;
+        row[19] = created;
+        row[20] = user;
+        row[21] = null;
+        row[22] = null;
+        row[23] = null;
+        row[24] = null;
+    }
+
+    private static int sample(double[] cdf, ThreadLocalRandom random) {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(i < 0 ? -i - 1 : i, cdf.length - 1);
+    }
+
+    // Rank k gets weight 1 / k^skew; skew 0 is uniform.
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int k = 0; k < n; k++) {
+            total += 1.0 / Math.pow(k + 1, skew);
+            cdf[k] = total;
+        }
+        for (int k = 0; k < n; k++) cdf[k] /= total;
+        return cdf;
+    }
+
+    private static final class Area {
+        final String areaCode;
+        final String province;
+        final String district;
+        final String precinct;
+        final String streetBlock;
+        final String street;
+        final String streetName;
+        final String streetBlockName;
+        final String home;
+        final String address;
+
+        Area(Random random) {
+            String[] province = PROVINCES[random.nextInt(PROVINCES.length)];
+            String ward = WARDS[random.nextInt(WARDS.length)];
+            String streetName = STREETS[random.nextInt(STREETS.length)];
+            int block = 1 + random.nextInt(40);
+
+            this.province = province[0];
+            this.district = String.format("%03d", 1 + random.nextInt(30));
+            this.precinct = String.format("%03d", 1 + random.nextInt(99));
+            this.streetBlock = String.format("%04d", block * 10);
+            this.areaCode = this.province + this.precinct + this.streetBlock;
+            this.street = String.format("%04d", random.nextInt(10_000));
+            this.streetName = streetName;
+            this.streetBlockName = "Tổ " + block + "-" + ward;
+            this.home = String.valueOf(1 + random.nextInt(300));
+            this.address = "Số " + home + " " + streetName + ", " + streetBlockName + ", Phường " + ward + " " + province[1];
+        }
+    }
+}
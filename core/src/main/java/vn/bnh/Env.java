@@ -0,0 +1,30 @@
+package vn.bnh;
+
+public final class Env {
+
+    private Env() {
+    }
+
+    public static String require(String key) {
+        String value = System.getenv(key);
+        if (value == null || value.isEmpty()) throw new IllegalStateException("Missing env: " + key);
+        return value;
+    }
+
+    public static String get(String key, String defaultValue) {
+        String value = System.getenv(key);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        return Long.parseLong(get(key, String.valueOf(defaultValue)));
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,294 @@
+package vn.bnh;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Hot-path event log: workers copy fixed-layout records into a preallocated ring and a daemon thread formats and writes them.
+// A full ring drops the record and counts it; workers never block on I/O or on each other beyond one CAS.
+// Each record is one line, "<ISO-8601 UTC instant> <LEVEL> <NAME> field=value ...", so the part after the level reads like
+// the java.util.logging messages (ORA45582 total=3 phase=insert_customer ...) and greps the same way.
+public final class EventLog {
+
+    private static final Logger LOGGER = Logger.getLogger(EventLog.class.getName());
+
+    private static final int MAX_NUMBERS = 2;
+    private static final int MAX_TEXTS = 4;
+
+    private static final List<Event> EVENTS = new CopyOnWriteArrayList<>();
+    private static final EventLog INSTANCE = new EventLog(ringCapacity(), openSink());
+
+    private final int mask;
+    private final int[] types;
+    private final long[] times;
+    private final long[] numbers;
+    private final Object[] texts;
+    private final AtomicLongArray published;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final Writer out;
+    private final Object drainLock = new Object();
+    private final StringBuilder line = new StringBuilder(256);
+    private long stampMillis = Long.MIN_VALUE;
+    private String stamp;
+    private final LongAdder writeErrors = new LongAdder();
+
+    private EventLog(int capacity, Writer out) {
+        this.mask = capacity - 1;
+        this.types = new int[capacity];
+        this.times = new long[capacity];
+        this.numbers = new long[capacity * MAX_NUMBERS];
+        this.texts = new Object[capacity * MAX_TEXTS];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) published.set(i, -1);
+        this.out = out;
+
+        MetricsRegistry.gauge("event_log_depth", "Records waiting in the event log ring", () -> tail.get() - head);
+        MetricsRegistry.counter("event_log_write_errors_total", "Event log lines lost to sink I/O errors", writeErrors::sum);
+
+        Thread drainer = new Thread(this::drainLoop, "event-log-drain");
+        drainer.setDaemon(true);
+        drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drainAll, "event-log-flush"));
+        LOGGER.log(Level.INFO, "EVENT_LOG capacity={0} sink={1}", new Object[]{String.valueOf(capacity), Env.get("EVENT_LOG_FILE", "stdout")});
+    }
+
+    // Sampling (EVENT_SAMPLE_<NAME>, keep 1 in N, 0 mutes) and rate limiting (EVENT_RATE_<NAME>, records per second) are per event.
+    // Synchronized so the id, which the drain thread uses to index EVENTS, always equals the event's list position.
+    public static synchronized Event event(String name, Level level) {
+        Event event = new Event(name, level, EVENTS.size(), Env.getInt("EVENT_SAMPLE_" + name, 1), Env.getLong("EVENT_RATE_" + name, 0));
+        EVENTS.add(event);
+        return event;
+    }
+
+    // Drains what is queued so far and logs per-event counts; call after a run so the summary follows the last records.
+    public static void logStats(String mode) {
+        INSTANCE.drainAll();
+        for (Event e : EVENTS) {
+            LOGGER.log(Level.INFO, "EVENT_LOG_STATS mode={0} event={1} written={2} sampled_out={3} rate_limited={4} dropped={5}", new Object[]{mode, e.name, String.valueOf(e.written.sum()), String.valueOf(e.sampledOut.sum()), String.valueOf(e.rateLimited.sum()), String.valueOf(e.dropped.sum())});
+        }
+    }
+
+    private boolean publish(Event event, long n0, long n1, Object t0, Object t1, Object t2, Object t3) {
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head > mask) return false;
+        } while (!tail.compareAndSet(seq, seq + 1));
+
+        int slot = (int) seq & mask;
+        types[slot] = event.id;
+        times[slot] = System.currentTimeMillis();
+        numbers[slot * MAX_NUMBERS] = n0;
+        numbers[slot * MAX_NUMBERS + 1] = n1;
+        int t = slot * MAX_TEXTS;
+        texts[t] = t0;
+        texts[t + 1] = t1;
+        texts[t + 2] = t2;
+        texts[t + 3] = t3;
+        published.setRelease(slot, seq);
+        return true;
+    }
+
+    private void drainLoop() {
+        long idleFlushNs = TimeUnit.MILLISECONDS.toNanos(Env.getLong("EVENT_LOG_FLUSH_MS", 200));
+        long lastFlushNs = System.nanoTime();
+        while (true) {
+            int drained;
+            synchronized (drainLock) {
+                drained = drain();
+                if (drained == 0 && System.nanoTime() - lastFlushNs >= idleFlushNs) {
+                    flush();
+                    lastFlushNs = System.nanoTime();
+                }
+            }
+            if (drained == 0) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private void drainAll() {
+        synchronized (drainLock) {
+            while (drain() > 0) {
+            }
+            flush();
+        }
+    }
+
+    // Caller holds drainLock. Stops at the first claimed-but-unpublished slot so records stay in claim order.
+    private int drain() {
+        long seq = head;
+        int drained = 0;
+        while (true) {
+            int slot = (int) seq & mask;
+            if (published.getAcquire(slot) != seq) break;
+            write(EVENTS.get(types[slot]), slot);
+            int t = slot * MAX_TEXTS;
+            for (int i = 0; i < MAX_TEXTS; i++) texts[t + i] = null;
+            seq++;
+            head = seq;
+            drained++;
+        }
+        return drained;
+    }
+
+    private void write(Event event, int slot) {
+        line.setLength(0);
+        if (times[slot] != stampMillis) {
+            stampMillis = times[slot];
+            stamp = Instant.ofEpochMilli(stampMillis).toString();
+        }
+        line.append(stamp).append(' ').append(event.level.getName()).append(' ').append(event.name);
+        int n = slot * MAX_NUMBERS;
+        int t = slot * MAX_TEXTS;
+        for (int i = 0; i < event.fieldCount; i++) {
+            line.append(' ').append(event.fields[i]).append('=');
+            if (event.numeric[i]) line.append(numbers[n++]);
+            else line.append(texts[t++]);
+        }
+        line.append('\n');
+        try {
+            out.append(line);
+            event.written.increment();
+        } catch (IOException e) {
+            writeErrors.increment();
+        }
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            writeErrors.increment();
+        }
+    }
+
+    private static int ringCapacity() {
+        int requested = Math.max(2, Env.getInt("EVENT_LOG_CAPACITY", 65536));
+        return Integer.highestOneBit(requested - 1) << 1;
+    }
+
+    // Writes straight to fd 1 rather than through System.out, whose PrintStream locks on every call.
+    private static Writer openSink() {
+        String file = Env.get("EVENT_LOG_FILE", null);
+        OutputStream stream;
+        try {
+            stream = file == null ? new FileOutputStream(FileDescriptor.out) : new FileOutputStream(file, true);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "EVENT_LOG_FILE_FAIL file={0} fallback=stdout msg={1}", new Object[]{file, e.getMessage()});
+            stream = new FileOutputStream(FileDescriptor.out);
+        }
+        return new OutputStreamWriter(new BufferedOutputStream(stream, 1 << 16), StandardCharsets.UTF_8);
+    }
+
+    // Declares a record layout once; fields render in declaration order, numbers and texts each filled from emit's arguments in order.
+    public static final class Event {
+        final String name;
+        final Level level;
+        final int id;
+        private final int sampleEvery;
+        private final long ratePerSecond;
+
+        String[] fields = new String[0];
+        boolean[] numeric = new boolean[0];
+        int fieldCount;
+        private int numberCount;
+        private int textCount;
+
+        private final AtomicLong windowSecond = new AtomicLong();
+        private final AtomicLong windowCount = new AtomicLong();
+
+        final LongAdder written = new LongAdder();
+        final LongAdder sampledOut = new LongAdder();
+        final LongAdder rateLimited = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+
+        private Event(String name, Level level, int id, int sampleEvery, long ratePerSecond) {
+            this.name = name;
+            this.level = level;
+            this.id = id;
+            this.sampleEvery = sampleEvery;
+            this.ratePerSecond = ratePerSecond;
+            MetricsRegistry.counter("events_total", "Event log records by outcome", written::sum, "event", name, "outcome", "written");
+            MetricsRegistry.counter("events_total", "Event log records by outcome", sampledOut::sum, "event", name, "outcome", "sampled_out");
+            MetricsRegistry.counter("events_total", "Event log records by outcome", rateLimited::sum, "event", name, "outcome", "rate_limited");
+            MetricsRegistry.counter("events_total", "Event log records by outcome", dropped::sum, "event", name, "outcome", "dropped");
+        }
+
+        public Event number(String field) {
+            if (numberCount == MAX_NUMBERS) throw new IllegalArgumentException(name + " has more than " + MAX_NUMBERS + " number fields");
+            numberCount++;
+            return add(field, true);
+        }
+
+        public Event text(String field) {
+            if (textCount == MAX_TEXTS) throw new IllegalArgumentException(name + " has more than " + MAX_TEXTS + " text fields");
+            textCount++;
+            return add(field, false);
+        }
+
+        public void emit(long n0, Object t0) {
+            if (admit()) record(n0, 0, t0, null, null, null);
+        }
+
+        public void emit(long n0, Object t0, Object t1, Object t2) {
+            if (admit()) record(n0, 0, t0, t1, t2, null);
+        }
+
+        public void emit(long n0, Object t0, Object t1, Object t2, Object t3) {
+            if (admit()) record(n0, 0, t0, t1, t2, t3);
+        }
+
+        public void emit(long n0, long n1, Object t0, Object t1) {
+            if (admit()) record(n0, n1, t0, t1, null, null);
+        }
+
+        // Texts are rendered with String.valueOf on the drain thread, so pass immutable values.
+        private void record(long n0, long n1, Object t0, Object t1, Object t2, Object t3) {
+            if (!INSTANCE.publish(this, n0, n1, t0, t1, t2, t3)) dropped.increment();
+        }
+
+        private boolean admit() {
+            if (sampleEvery != 1 && (sampleEvery <= 0 || ThreadLocalRandom.current().nextInt(sampleEvery) != 0)) {
+                sampledOut.increment();
+                return false;
+            }
+            if (ratePerSecond <= 0) return true;
+
+            long second = System.nanoTime() / 1_000_000_000L;
+            long window = windowSecond.get();
+            if (window != second && windowSecond.compareAndSet(window, second)) windowCount.set(0);
+            if (windowCount.incrementAndGet() > ratePerSecond) {
+                rateLimited.increment();
+                return false;
+            }
+            return true;
+        }
+
+        private Event add(String field, boolean isNumber) {
+            fields = Arrays.copyOf(fields, fieldCount + 1);
+            numeric = Arrays.copyOf(numeric, fieldCount + 1);
+            fields[fieldCount] = field;
+            numeric[fieldCount] = isNumber;
+            fieldCount++;
+            return this;
+        }
+    }
+}
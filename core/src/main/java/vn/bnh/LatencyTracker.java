@@ -0,0 +1,58 @@
+package vn.bnh;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+public final class LatencyTracker {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    // A fixed set of multi-writer recorders shared by all threads, so footprint does not grow with the worker count
+    // (thousands of virtual threads) and recorders do not outlive the threads that used them.
+    private static final int STRIPES = stripes();
+
+    private final String name;
+    private final Recorder[] recorders = new Recorder[STRIPES];
+    private final Histogram cumulative = new Histogram(SIGNIFICANT_DIGITS);
+    private Histogram published;
+
+    LatencyTracker(String name) {
+        this.name = name;
+        for (int i = 0; i < STRIPES; i++) recorders[i] = new Recorder(SIGNIFICANT_DIGITS);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        recorders[(int) Thread.currentThread().getId() & (STRIPES - 1)].recordValue(Math.max(0, nanos));
+    }
+
+    public void recordSince(long startNs) {
+        record(System.nanoTime() - startNs);
+    }
+
+    synchronized Histogram sampleInterval() {
+        Histogram interval = new Histogram(SIGNIFICANT_DIGITS);
+        for (Recorder recorder : recorders) interval.add(recorder.getIntervalHistogram());
+        cumulative.add(interval);
+        published = null;
+        return interval;
+    }
+
+    synchronized Histogram cumulative() {
+        return cumulative.copy();
+    }
+
+    // Read-only view for scrapers; copied at most once per reporting interval.
+    synchronized Histogram published() {
+        if (published == null) published = cumulative.copy();
+        return published;
+    }
+
+    // Core count rounded down to a power of two, at most 16 by default; LATENCY_STRIPES overrides it.
+    private static int stripes() {
+        return Integer.highestOneBit(Math.max(1, Env.getInt("LATENCY_STRIPES", Math.min(16, Runtime.getRuntime().availableProcessors()))));
+    }
+}
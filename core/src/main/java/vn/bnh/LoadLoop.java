@@ -0,0 +1,158 @@
+package vn.bnh;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class LoadLoop {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadLoop.class.getName());
+    private static final ThreadLocal<long[]> THINK_NS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private LoadLoop() {
+    }
+
+    public static boolean virtualThreads() {
+        String mode = Env.get("EXECUTOR_MODE", "platform");
+        if ("virtual".equals(mode)) return true;
+        if ("platform".equals(mode)) return false;
+        throw new IllegalStateException("Unknown EXECUTOR_MODE: " + mode);
+    }
+
+    public static int concurrency(int workers) {
+        return Math.max(1, Math.min(workers, Env.getInt("MAX_IN_FLIGHT", workers)));
+    }
+
+    // A worker that keeps its connection between operations holds it while queued on the limiter, so MAX_IN_FLIGHT does not bound the pool.
+    public static int poolSize(int workers, boolean workersHoldConnections) {
+        return workersHoldConnections ? workers : concurrency(workers);
+    }
+
+    // Called from a task: the worker pauses after the operation, without a MAX_IN_FLIGHT permit and outside OPERATION latency.
+    // Closed loop only; open-loop arrivals already set the pacing.
+    public static void thinkAfter(long nanos) {
+        THINK_NS.get()[0] = nanos;
+    }
+
+    public static void run(String mode, int workers, long durationSeconds, Runnable task, Runnable workerExit) throws Exception {
+        boolean virtual = virtualThreads();
+        int inFlight = concurrency(workers);
+        Semaphore limiter = inFlight < workers ? new Semaphore(inFlight) : null;
+
+        ArrivalSchedule schedule = ArrivalSchedule.fromEnv();
+
+        LOGGER.log(Level.INFO, "EXECUTOR mode={0} executor={1} workers={2} max_in_flight={3} model={4}", new Object[]{mode, virtual ? "virtual" : "platform", workers, inFlight, schedule == null ? "closed" : "open"});
+
+        MetricsServer.startFromEnv();
+
+        ExecutorService executor = virtual ? newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(workers);
+        VirtualThreadStats threadStats = virtual ? VirtualThreadStats.start() : null;
+        AllocationStats allocations = AllocationStats.start();
+
+        long runStartNs = System.nanoTime();
+        long deadlineNs = runStartNs + TimeUnit.SECONDS.toNanos(durationSeconds);
+        RunMetrics.start(mode, Env.getLong("METRICS_INTERVAL", 10));
+
+        AtomicLong tickets = new AtomicLong();
+        LongAdder late = new LongAdder();
+        long lateThresholdNs = TimeUnit.MILLISECONDS.toNanos(Env.getLong("LATE_THRESHOLD_MS", 10));
+
+        LongAdder active = new LongAdder();
+        MetricsRegistry.gauge("ops_in_flight", "Operations currently executing", active::sum);
+        MetricsRegistry.gauge("ops_waiting", "Workers queued on the MAX_IN_FLIGHT limiter", () -> limiter == null ? 0 : limiter.getQueueLength());
+        if (schedule != null) {
+            MetricsRegistry.gauge("open_loop_backlog", "Scheduled arrivals not yet dispatched", () -> Math.max(0, schedule.arrivalsWithin((System.nanoTime() - runStartNs) / 1e9) - (tickets.get() - workers)));
+            MetricsRegistry.counter("open_loop_late_total", "Operations that started later than LATE_THRESHOLD_MS after their intended time", late::sum);
+        }
+
+        for (int i = 0; i < workers; i++) {
+            executor.submit(() -> {
+                long[] think = THINK_NS.get();
+                if (schedule == null) {
+                    while (System.nanoTime() < deadlineNs) {
+                        long startNs = System.nanoTime();
+                        runLimited(limiter, active, allocations, task);
+                        RunMetrics.OPERATION.recordSince(startNs);
+                        if (think[0] > 0) {
+                            LockSupport.parkNanos(Math.min(think[0], deadlineNs - System.nanoTime()));
+                            think[0] = 0;
+                        }
+                    }
+                } else {
+                    for (; ; ) {
+                        long intendedNs = runStartNs + schedule.intendedOffsetNanos(tickets.getAndIncrement());
+                        if (intendedNs - deadlineNs >= 0 || System.nanoTime() - deadlineNs >= 0) break;
+
+                        long waitNs;
+                        while ((waitNs = intendedNs - System.nanoTime()) > 0) LockSupport.parkNanos(waitNs);
+
+                        long startNs = System.nanoTime();
+                        if (startNs - intendedNs > lateThresholdNs) late.increment();
+                        runLimited(limiter, active, allocations, task);
+                        think[0] = 0;
+
+                        // Measured from the intended start so queueing behind a slow database is not hidden.
+                        RunMetrics.OPERATION.recordSince(intendedNs);
+                        RunMetrics.SERVICE.recordSince(startNs);
+                    }
+                }
+                workerExit.run();
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        long elapsedNs = System.nanoTime() - runStartNs;
+        RunMetrics.finish();
+        RunErrors.logSummary(mode);
+        RetryPolicy.logStats(mode);
+        CircuitBreaker.logStats(mode);
+        if (threadStats != null) threadStats.finish(mode);
+        if (allocations != null) allocations.finish(mode);
+
+        // Rows, not loop iterations, over the sessions the pools actually lent out at peak: the per-session rate to compare across
+        // modes that batch, pipeline, or fan out to shard executors. MAX_IN_FLIGHT stands in when no pool reports statistics.
+        long ops = RunMetrics.OPERATION.cumulative().getTotalCount();
+        long rows = RunMetrics.rowsWritten();
+        long sessions = PoolMetrics.peakBorrowed();
+        if (sessions == 0) sessions = inFlight;
+        double seconds = elapsedNs / 1e9;
+        LOGGER.log(Level.INFO, "THROUGHPUT mode={0} ops={1} rows={2} rows_s={3} sessions={4} rows_s_per_session={5}", new Object[]{mode, String.valueOf(ops), String.valueOf(rows), String.valueOf(Math.round(rows / seconds)), String.valueOf(sessions), String.valueOf(Math.round(rows / seconds / sessions))});
+
+        if (schedule != null) {
+            long scheduled = schedule.arrivalsWithin(durationSeconds);
+            long dispatched = Math.min(tickets.get() - workers, scheduled);
+            LOGGER.log(Level.INFO, "OPEN_LOOP mode={0} target_tps={1} scheduled={2} dispatched={3} late={4} missed={5} late_threshold_ms={6}", new Object[]{mode, schedule.targetRate(), scheduled, dispatched, late.sum(), scheduled - dispatched, TimeUnit.NANOSECONDS.toMillis(lateThresholdNs)});
+        }
+    }
+
+    private static void runLimited(Semaphore limiter, LongAdder active, AllocationStats allocations, Runnable task) {
+        if (limiter != null) limiter.acquireUninterruptibly();
+        active.increment();
+        long allocatedBefore = allocations == null ? 0 : allocations.begin();
+        try {
+            task.run();
+        } finally {
+            if (allocations != null) allocations.end(allocatedBefore);
+            active.decrement();
+            if (limiter != null) limiter.release();
+        }
+    }
+
+    // Resolved reflectively so the build keeps targeting release 17; needs a Java 21 runtime.
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("EXECUTOR_MODE=virtual requires Java 21, running " + Runtime.version());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package vn.bnh;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+public final class MetricsRegistry {
+
+    private static final String PREFIX = "oracle_client_";
+
+    private static final Map<String, Series> SERIES = new ConcurrentSkipListMap<>();
+    private static volatile String commonLabels = "";
+
+    private MetricsRegistry() {
+    }
+
+    public static void counter(String name, String help, DoubleSupplier value, String... labels) {
+        register(name, "counter", help, name, value, labels);
+    }
+
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        register(name, "gauge", help, name, value, labels);
+    }
+
+    // Summary families carry several series: name{quantile=...}, name_count and name_sum.
+    public static void summary(String name, String help, String series, DoubleSupplier value, String... labels) {
+        register(name, "summary", help, series, value, labels);
+    }
+
+    public static void unregister(String name, String... labels) {
+        SERIES.remove(key(PREFIX + name, PREFIX + name, format(labels)));
+    }
+
+    public static void setCommonLabels(String... labels) {
+        commonLabels = format(labels);
+    }
+
+    static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        String common = commonLabels;
+        String family = null;
+
+        for (Series s : SERIES.values()) {
+            if (!s.family.equals(family)) {
+                family = s.family;
+                out.append("# HELP ").append(family).append(' ').append(s.help).append('\n');
+                out.append("# TYPE ").append(family).append(' ').append(s.type).append('\n');
+            }
+            out.append(s.name);
+            String labels = join(common, s.labels);
+            if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+            out.append(' ').append(value(s)).append('\n');
+        }
+        return out.toString();
+    }
+
+    static Map<String, Double> snapshot() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Series s : SERIES.values()) values.put(s.labels.isEmpty() ? s.name : s.name + "{" + s.labels + "}", value(s));
+        return values;
+    }
+
+    private static void register(String family, String type, String help, String series, DoubleSupplier value, String... labels) {
+        String labelText = format(labels);
+        Series s = new Series(PREFIX + family, type, help, PREFIX + series, labelText, value);
+        SERIES.put(key(s.family, s.name, labelText), s);
+    }
+
+    private static double value(Series s) {
+        try {
+            return s.value.getAsDouble();
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    // Sorting by family first keeps each family's series contiguous in the scrape output.
+    private static String key(String family, String series, String labels) {
+        return family + ' ' + series + '{' + labels + '}';
+    }
+
+    private static String format(String... labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("labels must be key/value pairs");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"").append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String join(String a, String b) {
+        if (a.isEmpty()) return b;
+        if (b.isEmpty()) return a;
+        return a + "," + b;
+    }
+
+    private static final class Series {
+        final String family;
+        final String type;
+        final String help;
+        final String name;
+        final String labels;
+        final DoubleSupplier value;
+
+        Series(String family, String type, String help, String name, String labels, DoubleSupplier value) {
+            this.family = family;
+            this.type = type;
+            this.help = help;
+            this.name = name;
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+}
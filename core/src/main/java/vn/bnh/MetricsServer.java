@@ -0,0 +1,125 @@
+package vn.bnh;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class MetricsServer {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsServer.class.getName());
+
+    private static boolean started;
+
+    private MetricsServer() {
+    }
+
+    // Starts the Prometheus endpoint when METRICS_PORT is set and registers the JMX bean; safe to call repeatedly.
+    public static synchronized void startFromEnv() {
+        if (started) return;
+        started = true;
+
+        registerMBean();
+
+        int port = Env.getInt("METRICS_PORT", 0);
+        if (port <= 0) return;
+
+        // The HTTP dispatcher thread inherits daemon status from the thread that starts the server.
+        Thread starter = new Thread(() -> startHttp(port), "metrics-http-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void startHttp(int port) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = MetricsRegistry.scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "metrics-http");
+                t.setDaemon(true);
+                return t;
+            }));
+            server.start();
+            LOGGER.log(Level.INFO, "METRICS_HTTP port={0} path=/metrics", String.valueOf(port));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "METRICS_HTTP_FAIL port={0} msg={1}", new Object[]{String.valueOf(port), e.getMessage()});
+        }
+    }
+
+    private static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName("vn.bnh:type=Metrics"));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "METRICS_JMX_FAIL msg={0}", e.getMessage());
+        }
+    }
+
+    // Exposes every registered series as a read-only attribute named after its Prometheus sample.
+    private static final class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) {
+            return MetricsRegistry.snapshot().get(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Double> values = MetricsRegistry.snapshot();
+            AttributeList list = new AttributeList();
+            for (String name : attributes) {
+                if (values.containsKey(name)) list.add(new Attribute(name, values.get(name)));
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : MetricsRegistry.snapshot().keySet()) {
+                attributes.add(new MBeanAttributeInfo(name, Double.class.getName(), name, true, false, false));
+            }
+            return new MBeanInfo(MetricsMBean.class.getName(), "oracle-client run metrics", attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
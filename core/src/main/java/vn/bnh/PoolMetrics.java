@@ -0,0 +1,49 @@
+package vn.bnh;
+
+import oracle.ucp.UniversalConnectionPoolStatistics;
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToDoubleFunction;
+
+public final class PoolMetrics {
+
+    private static final List<PoolDataSource> POOLS = new CopyOnWriteArrayList<>();
+
+    private PoolMetrics() {
+    }
+
+    public static void register(PoolDataSource pool) {
+        String name = pool.getConnectionPoolName() == null ? "default" : pool.getConnectionPoolName();
+        POOLS.add(pool);
+
+        gauge(pool, name, "pool_borrowed_connections", "Connections currently borrowed from the UCP pool", UniversalConnectionPoolStatistics::getBorrowedConnectionsCount);
+        gauge(pool, name, "pool_available_connections", "Idle connections available in the UCP pool", UniversalConnectionPoolStatistics::getAvailableConnectionsCount);
+        gauge(pool, name, "pool_total_connections", "Connections currently open in the UCP pool", UniversalConnectionPoolStatistics::getTotalConnectionsCount);
+        gauge(pool, name, "pool_pending_requests", "Borrow requests waiting for a connection", UniversalConnectionPoolStatistics::getPendingRequestsCount);
+        gauge(pool, name, "pool_average_wait_seconds", "Average connection wait time reported by UCP", s -> s.getAverageConnectionWaitTime() / 1e3);
+        gauge(pool, name, "pool_peak_wait_seconds", "Peak connection wait time reported by UCP", s -> s.getPeakConnectionWaitTime() / 1e3);
+        MetricsRegistry.counter("pool_borrows_total", "Connections borrowed from the UCP pool", () -> value(pool, s -> s.getCumulativeConnectionBorrowedCount()), "pool", name);
+        MetricsRegistry.counter("pool_failed_waits_total", "Borrow requests that timed out waiting for a connection", () -> value(pool, s -> s.getCumulativeFailedConnectionWaitCount()), "pool", name);
+    }
+
+    // Sum of each registered pool's borrowed-connection peak: the sessions a run actually held at once, or 0 when no pool reports.
+    public static long peakBorrowed() {
+        long peak = 0;
+        for (PoolDataSource pool : POOLS) {
+            double value = value(pool, UniversalConnectionPoolStatistics::getPeakBorrowedConnectionsCount);
+            if (!Double.isNaN(value)) peak += (long) value;
+        }
+        return peak;
+    }
+
+    private static void gauge(PoolDataSource pool, String poolName, String name, String help, ToDoubleFunction<UniversalConnectionPoolStatistics> metric) {
+        MetricsRegistry.gauge(name, help, () -> value(pool, metric), "pool", poolName);
+    }
+
+    private static double value(PoolDataSource pool, ToDoubleFunction<UniversalConnectionPoolStatistics> metric) {
+        UniversalConnectionPoolStatistics stats = pool.getStatistics();
+        return stats == null ? Double.NaN : metric.applyAsDouble(stats);
+    }
+}
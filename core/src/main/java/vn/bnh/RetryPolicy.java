@@ -0,0 +1,126 @@
+package vn.bnh;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class RetryPolicy {
+
+    private static final Logger LOGGER = Logger.getLogger(RetryPolicy.class.getName());
+    private static final long TOKEN = 1_000;
+
+    // Process-wide retry budget: every first attempt deposits a fraction of a token and
+    // every retry withdraws a whole one, so retries stay bounded when a whole tier is failing.
+    private static final AtomicLong TOKENS = new AtomicLong(-1);
+
+    private static final LongAdder RETRIES = new LongAdder();
+    private static final LongAdder BUDGET_EXHAUSTED = new LongAdder();
+
+    static {
+        MetricsRegistry.counter("retries_total", "Retried attempts across all retry policies", RETRIES::sum);
+        MetricsRegistry.counter("retry_budget_exhausted_total", "Retries refused because the retry budget was empty", BUDGET_EXHAUSTED::sum);
+        MetricsRegistry.gauge("retry_budget_tokens", "Remaining process-wide retry tokens", () -> Math.max(0, TOKENS.get()) / (double) TOKEN);
+    }
+
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final long depositPerCall;
+    private final long maxTokens;
+
+    public RetryPolicy(int maxAttempts, long baseBackoffMs, long maxBackoffMs, double budgetRatio, int minBudget) {
+        if (maxAttempts <= 0 || baseBackoffMs < 0 || maxBackoffMs < baseBackoffMs || budgetRatio < 0 || minBudget < 0) throw new IllegalArgumentException();
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.depositPerCall = Math.round(budgetRatio * TOKEN);
+        this.maxTokens = Math.max(minBudget, 1) * TOKEN * 10;
+        TOKENS.compareAndSet(-1, minBudget * TOKEN);
+    }
+
+    public static RetryPolicy fromEnv() {
+        return new RetryPolicy(Env.getInt("RETRY_MAX_ATTEMPTS", 3), Env.getLong("RETRY_BASE_MS", 100), Env.getLong("RETRY_MAX_MS", 5_000), Double.parseDouble(Env.get("RETRY_BUDGET_RATIO", "0.1")), Env.getInt("RETRY_BUDGET_MIN", 10));
+    }
+
+    public <T> T call(CircuitBreaker breaker, Call<T> call, Observer observer) throws Exception {
+        boolean probe = breaker != null && breaker.acquire();
+        deposit();
+
+        // A probe that leaves without onSuccess/onFailure (fatal or non-SQL error) would pin the breaker HALF_OPEN.
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    T result = call.run();
+                    if (breaker != null) breaker.onSuccess();
+                    probe = false;
+                    RunErrors.succeeded();
+                    return result;
+                } catch (Exception e) {
+                    SqlErrorClassifier.Kind kind = SqlErrorClassifier.classify(e);
+                    if (kind == SqlErrorClassifier.Kind.FATAL || kind == SqlErrorClassifier.Kind.SHED) throw e;
+
+                    if (observer != null && e instanceof SQLException) observer.onRetryable(kind, (SQLException) e, attempt);
+                    // An exhausted local pool says nothing about the shard's health: it must not open the breaker, and a
+                    // probe that hit it keeps its slot for the retry (or hands it back via releaseProbe).
+                    if (breaker != null && kind != SqlErrorClassifier.Kind.POOL_EXHAUSTED) {
+                        breaker.onFailure();
+                        probe = false;
+                    }
+
+                    if (attempt >= maxAttempts) throw e;
+                    if (!withdraw()) {
+                        BUDGET_EXHAUSTED.increment();
+                        throw e;
+                    }
+                    if (breaker != null && !probe) probe = breaker.acquire();
+
+                    RETRIES.increment();
+                    sleep(attempt);
+                }
+            }
+        } finally {
+            if (probe) breaker.releaseProbe();
+        }
+    }
+
+    public static void logStats(String mode) {
+        LOGGER.log(Level.INFO, "RETRY_STATS mode={0} retries={1} budget_exhausted={2} budget_tokens={3}", new Object[]{mode, RETRIES.sum(), BUDGET_EXHAUSTED.sum(), Math.max(0, TOKENS.get()) / TOKEN});
+    }
+
+    private void deposit() {
+        if (depositPerCall == 0) return;
+        long current;
+        while ((current = TOKENS.get()) < maxTokens) {
+            if (TOKENS.compareAndSet(current, Math.min(maxTokens, current + depositPerCall))) return;
+        }
+    }
+
+    private boolean withdraw() {
+        long current;
+        while ((current = TOKENS.get()) >= TOKEN) {
+            if (TOKENS.compareAndSet(current, current - TOKEN)) return true;
+        }
+        return false;
+    }
+
+    // Full jitter: uniform in [0, min(max, base * 2^(attempt-1))].
+    private void sleep(int attempt) throws InterruptedException {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) return;
+        TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T run() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Observer {
+        void onRetryable(SqlErrorClassifier.Kind kind, SQLException error, int attempt);
+    }
+}
@@ -0,0 +1,78 @@
+package vn.bnh;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class RunErrors {
+
+    private static final Logger LOGGER = Logger.getLogger(RunErrors.class.getName());
+
+    private static final Map<String, LongAdder> COUNTS = new ConcurrentHashMap<>();
+    private static final LongAdder SHED = new LongAdder();
+    private static final AtomicLong FATAL_STREAK = new AtomicLong();
+    private static final long ABORT_AFTER_FATAL = Env.getLong("ABORT_AFTER_FATAL", 100);
+
+    static {
+        MetricsRegistry.counter("shed_total", "Operations rejected by an open circuit breaker", SHED::sum);
+    }
+
+    private RunErrors() {
+    }
+
+    // Counts a failed operation and lets the run continue. Only a streak of
+    // ABORT_AFTER_FATAL fatal errors with no success in between ends the process.
+    public static void record(Logger logger, String mode, Throwable error) {
+        if (error instanceof CircuitBreaker.CircuitOpenException) {
+            SHED.increment();
+            return;
+        }
+
+        SqlErrorClassifier.Kind kind = SqlErrorClassifier.classify(error);
+        int code = SqlErrorClassifier.errorCode(error);
+        LongAdder count = COUNTS.computeIfAbsent(kind.name().toLowerCase() + ":" + code, k -> register(kind, code));
+        boolean first = count.sum() == 0;
+        count.increment();
+
+        if (kind != SqlErrorClassifier.Kind.FATAL) {
+            logger.log(Level.WARNING, "OP_ERROR mode={0} kind={1} code={2} total={3} msg={4}", new Object[]{mode, kind, String.valueOf(code), count.sum(), error.getMessage()});
+            return;
+        }
+
+        long streak = FATAL_STREAK.incrementAndGet();
+        if (first) logger.log(Level.SEVERE, "OP_ERROR mode=" + mode + " kind=FATAL code=" + code, error);
+        else logger.log(Level.WARNING, "OP_ERROR mode={0} kind={1} code={2} total={3} msg={4}", new Object[]{mode, kind, String.valueOf(code), count.sum(), error.getMessage()});
+
+        if (streak >= ABORT_AFTER_FATAL) {
+            logSummary(mode);
+            logger.log(Level.SEVERE, "STOP mode=" + mode + " fatal_streak=" + streak, error);
+            System.exit(1);
+        }
+    }
+
+    private static LongAdder register(SqlErrorClassifier.Kind kind, int code) {
+        LongAdder count = new LongAdder();
+        MetricsRegistry.counter("errors_total", "Failed operations by error class and ORA code", count::sum, "kind", kind.name().toLowerCase(), "code", String.valueOf(code));
+        return count;
+    }
+
+    public static void succeeded() {
+        if (FATAL_STREAK.get() != 0) FATAL_STREAK.set(0);
+    }
+
+    public static long total() {
+        long total = SHED.sum();
+        for (LongAdder count : COUNTS.values()) total += count.sum();
+        return total;
+    }
+
+    public static void logSummary(String mode) {
+        LOGGER.log(Level.INFO, "ERROR_SUMMARY mode={0} total={1} shed={2}", new Object[]{mode, total(), SHED.sum()});
+        for (Map.Entry<String, LongAdder> entry : COUNTS.entrySet()) {
+            LOGGER.log(Level.INFO, "ERROR_COUNT mode={0} error={1} count={2}", new Object[]{mode, entry.getKey(), entry.getValue().sum()});
+        }
+    }
+}
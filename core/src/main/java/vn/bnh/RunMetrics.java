@@ -0,0 +1,178 @@
+package vn.bnh;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public final class RunMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(RunMetrics.class.getName());
+    private static final Pattern SUMMARY_HDR = Pattern.compile("SUMMARY_HDR mode=(\\S+) phase=(\\S+) elapsed_ms=(\\d+) hist=(\\S+)");
+
+    private static final ConcurrentMap<String, LatencyTracker> TRACKERS = new ConcurrentHashMap<>();
+
+    public static final LatencyTracker OPERATION = tracker("op");
+    public static final LatencyTracker SERVICE = tracker("service");
+    public static final LatencyTracker BORROW = tracker("borrow");
+    public static final LatencyTracker SHARDING_KEY = tracker("sharding_key");
+    public static final LatencyTracker EXECUTE = tracker("execute");
+    public static final LatencyTracker COMMIT = tracker("commit");
+    public static final LatencyTracker ASSEMBLY = tracker("assembly");
+
+    private static final LongAdder ROWS = new LongAdder();
+
+    static {
+        MetricsRegistry.counter("rows_written_total", "Rows committed by the load, batched and pipelined writes included", ROWS::sum);
+    }
+
+    private static ScheduledExecutorService reporter;
+    private static String runMode;
+    private static long runStartNs;
+    private static long intervalStartNs;
+
+    private RunMetrics() {
+    }
+
+    // Called once the rows are durable (after commit, or on completion for autocommit executions).
+    public static void rowsWritten(long rows) {
+        ROWS.add(rows);
+    }
+
+    public static long rowsWritten() {
+        return ROWS.sum();
+    }
+
+    public static LatencyTracker tracker(String name) {
+        return TRACKERS.computeIfAbsent(name, RunMetrics::newTracker);
+    }
+
+    private static LatencyTracker newTracker(String name) {
+        LatencyTracker tracker = new LatencyTracker(name);
+        String help = "Latency per phase, cumulative since run start and refreshed every METRICS_INTERVAL";
+        for (double q : new double[]{0.5, 0.99, 0.999}) {
+            MetricsRegistry.summary("latency_seconds", help, "latency_seconds", () -> tracker.published().getValueAtPercentile(q * 100) / 1e9, "phase", name, "quantile", String.valueOf(q));
+        }
+        MetricsRegistry.summary("latency_seconds", help, "latency_seconds_count", () -> tracker.published().getTotalCount(), "phase", name);
+        MetricsRegistry.summary("latency_seconds", help, "latency_seconds_sum", () -> {
+            Histogram h = tracker.published();
+            return h.getMean() * h.getTotalCount() / 1e9;
+        }, "phase", name);
+        return tracker;
+    }
+
+    public static synchronized void start(String mode, long intervalSeconds) {
+        if (reporter != null) throw new IllegalStateException("metrics already started");
+        runMode = mode;
+        MetricsRegistry.setCommonLabels("mode", mode);
+        runStartNs = System.nanoTime();
+        intervalStartNs = runStartNs;
+
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(RunMetrics::reportInterval, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void finish() throws InterruptedException {
+        if (reporter == null) return;
+        reporter.shutdown();
+        reporter.awaitTermination(1, TimeUnit.MINUTES);
+        reporter = null;
+
+        reportInterval();
+
+        long elapsedNs = System.nanoTime() - runStartNs;
+        for (LatencyTracker tracker : TRACKERS.values()) {
+            Histogram total = tracker.cumulative();
+            if (total.getTotalCount() == 0) continue;
+            LOGGER.log(Level.INFO, "SUMMARY mode={0} phase={1} {2}", new Object[]{runMode, tracker.name(), describe(total, elapsedNs)});
+            LOGGER.log(Level.INFO, "SUMMARY_HDR mode={0} phase={1} elapsed_ms={2} hist={3}", new Object[]{runMode, tracker.name(), String.valueOf(TimeUnit.NANOSECONDS.toMillis(elapsedNs)), encode(total)});
+        }
+    }
+
+    // Merges SUMMARY_HDR lines from the logs of several pods into one summary per mode and phase.
+    public static void mergeSummaries(String[] paths) throws Exception {
+        Map<String, Histogram> merged = new TreeMap<>();
+        Map<String, Double> throughput = new TreeMap<>();
+        Map<String, Integer> pods = new TreeMap<>();
+
+        for (String path : paths) {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Matcher m = SUMMARY_HDR.matcher(line);
+                    if (!m.find()) continue;
+
+                    String key = "mode=" + m.group(1) + " phase=" + m.group(2);
+                    Histogram h = decode(m.group(4));
+                    double elapsedS = Long.parseLong(m.group(3)) / 1_000.0;
+
+                    merged.computeIfAbsent(key, k -> new Histogram(3)).add(h);
+                    throughput.merge(key, elapsedS <= 0 ? 0 : h.getTotalCount() / elapsedS, Double::sum);
+                    pods.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Histogram> e : merged.entrySet()) {
+            Histogram h = e.getValue();
+            LOGGER.log(Level.INFO, "MERGED {0} pods={1} ops={2} ops_s={3} {4}", new Object[]{e.getKey(), pods.get(e.getKey()), h.getTotalCount(), Math.round(throughput.get(e.getKey())), quantiles(h)});
+        }
+    }
+
+    private static synchronized void reportInterval() {
+        long now = System.nanoTime();
+        long intervalNs = now - intervalStartNs;
+        intervalStartNs = now;
+
+        for (LatencyTracker tracker : TRACKERS.values()) {
+            Histogram interval = tracker.sampleInterval();
+            if (interval.getTotalCount() == 0) continue;
+            LOGGER.log(Level.INFO, "INTERVAL mode={0} phase={1} {2}", new Object[]{runMode, tracker.name(), describe(interval, intervalNs)});
+        }
+    }
+
+    private static String describe(Histogram h, long elapsedNs) {
+        long opsPerSecond = elapsedNs <= 0 ? 0 : Math.round(h.getTotalCount() * 1e9 / elapsedNs);
+        long totalMs = Math.round(h.getMean() * h.getTotalCount() / 1e6);
+        return "ops=" + h.getTotalCount() + " ops_s=" + opsPerSecond + " total_ms=" + totalMs + " " + quantiles(h);
+    }
+
+    private static String quantiles(Histogram h) {
+        return "p50_us=" + micros(h.getValueAtPercentile(50)) + " p99_us=" + micros(h.getValueAtPercentile(99)) + " p999_us=" + micros(h.getValueAtPercentile(99.9)) + " max_us=" + micros(h.getMaxValue());
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static String encode(Histogram h) {
+        ByteBuffer buffer = ByteBuffer.allocate(h.getNeededByteBufferCapacity());
+        int length = h.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    private static Histogram decode(String base64) throws Exception {
+        return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(base64)), 0);
+    }
+}
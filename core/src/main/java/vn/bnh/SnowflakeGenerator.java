@@ -1,5 +1,10 @@
 package vn.bnh;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
 public final class SnowflakeGenerator {
 
     private static final int NODE_ID_BITS = 10;
@@ -7,48 +12,96 @@ public final class SnowflakeGenerator {
 
     private static final int MAX_NODE_ID = (1 << NODE_ID_BITS) - 1;
     private static final int MAX_SEQUENCE = (1 << SEQUENCE_BITS) - 1;
+    private static final int SEQUENCE_RANGE = MAX_SEQUENCE + 1;
 
     private static final int NODE_SHIFT = SEQUENCE_BITS;
     private static final int TIME_SHIFT = NODE_ID_BITS + SEQUENCE_BITS;
 
     private static final long CUSTOM_EPOCH = 1420070400000L;
+    private static final long DEFAULT_MAX_DRIFT_MS = 100;
 
     private final int nodeId;
-    private long lastTimestamp = -1L;
-    private int sequence = 0;
+    private final long maxDriftMs;
+    private final LongSupplier clockMs;
+
+    // Next free slot packed as (timestamp << SEQUENCE_BITS) | sequence. A full
+    // millisecond carries into the timestamp, so the logical clock may run
+    // ahead of the wall clock by at most maxDriftMs.
+    private final AtomicLong state = new AtomicLong();
 
     public SnowflakeGenerator() {
-        int id = Integer.parseInt(System.getenv("MACHINE_ID"));
+        int id = Integer.parseInt(Env.require("MACHINE_ID"));
         if ((id & ~MAX_NODE_ID) != 0) throw new IllegalStateException();
         this.nodeId = id;
+        this.maxDriftMs = DEFAULT_MAX_DRIFT_MS;
+        this.clockMs = System::currentTimeMillis;
     }
 
     public SnowflakeGenerator(int nodeId) {
+        this(nodeId, DEFAULT_MAX_DRIFT_MS);
+    }
+
+    public SnowflakeGenerator(int nodeId, long maxDriftMs) {
+        this(nodeId, maxDriftMs, System::currentTimeMillis);
+    }
+
+    // Benchmarks pass a clock that ticks faster than wall time so the 4096-per-ms sequence cap does not hide CAS cost.
+    SnowflakeGenerator(int nodeId, long maxDriftMs, LongSupplier clockMs) {
         if ((nodeId & ~MAX_NODE_ID) != 0) throw new IllegalArgumentException();
+        if (maxDriftMs < 0) throw new IllegalArgumentException();
         this.nodeId = nodeId;
+        this.maxDriftMs = maxDriftMs;
+        this.clockMs = clockMs;
+    }
+
+    public long nextId() {
+        return compose(reserve(1));
     }
 
-    public synchronized long nextId() {
-        long ts = System.currentTimeMillis() - CUSTOM_EPOCH;
+    public void nextIds(long[] out, int n) {
+        if (n < 0 || n > out.length) throw new IllegalArgumentException();
 
-        while (ts < lastTimestamp) {
-            Thread.onSpinWait();
-            ts = System.currentTimeMillis() - CUSTOM_EPOCH;
+        int filled = 0;
+        while (filled < n) {
+            long start = reserve(n - filled);
+            int granted = granted(start, n - filled);
+            long first = compose(start);
+            for (int i = 0; i < granted; i++) out[filled++] = first + i;
         }
+    }
+
+    private long reserve(int wanted) {
+        long waitDeadlineNs = 0;
 
-        if (ts == lastTimestamp) {
-            sequence = (sequence + 1) & MAX_SEQUENCE;
-            if (sequence == 0) {
-                do {
-                    Thread.onSpinWait();
-                    ts = System.currentTimeMillis() - CUSTOM_EPOCH;
-                } while (ts == lastTimestamp);
+        for (; ; ) {
+            long now = clockMs.getAsLong() - CUSTOM_EPOCH;
+            long current = state.get();
+            long logicalTs = current >>> SEQUENCE_BITS;
+
+            long start;
+            if (now > logicalTs) {
+                start = now << SEQUENCE_BITS;
+            } else if (logicalTs - now <= maxDriftMs) {
+                start = current;
+            } else {
+                if (waitDeadlineNs == 0) waitDeadlineNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDriftMs + 1);
+                if (System.nanoTime() - waitDeadlineNs > 0) {
+                    throw new IllegalStateException("Clock moved backwards: node=" + nodeId + " lag_ms=" + (logicalTs - now));
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
             }
-        } else {
-            sequence = 0;
+
+            if (state.compareAndSet(current, start + granted(start, wanted))) return start;
         }
+    }
+
+    private static int granted(long start, int wanted) {
+        return Math.min(wanted, SEQUENCE_RANGE - (int) (start & MAX_SEQUENCE));
+    }
 
-        lastTimestamp = ts;
-        return (ts << TIME_SHIFT) | ((long) nodeId << NODE_SHIFT) | (sequence & MAX_SEQUENCE);
+    private long compose(long slot) {
+        long ts = slot >>> SEQUENCE_BITS;
+        return (ts << TIME_SHIFT) | ((long) nodeId << NODE_SHIFT) | (slot & MAX_SEQUENCE);
     }
 }
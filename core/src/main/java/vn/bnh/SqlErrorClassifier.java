@@ -0,0 +1,88 @@
+package vn.bnh;
+
+import oracle.ucp.UniversalConnectionPoolException;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+
+public final class SqlErrorClassifier {
+
+    public enum Kind {
+        ROUTING_STALE, TRANSIENT, POOL_EXHAUSTED, SHED, FATAL
+    }
+
+    private static final int[] ROUTING_STALE_CODES = {45582};
+
+    // ORA-14400 is what a direct shard connection gets when the key's chunk has moved off that shard; through GDS it is a
+    // genuine no-partition error. Borrow paths mark the thread with the kind of connection they last handed out.
+    private static final int ORA_NO_PARTITION = 14400;
+    private static final ThreadLocal<boolean[]> DIRECT_BORROW = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    // UCP-29 "Failed to get a connection" and UCP-45067 "Unable to create connection within connection wait timeout".
+    private static final int[] POOL_EXHAUSTED_CODES = {29, 45067};
+
+    // Overload, failover and connection-loss codes seen during shard and RAC maintenance.
+    private static final int[] TRANSIENT_CODES = {5086, 60, 1033, 1034, 1089, 3113, 3114, 3135, 12514, 12516, 12519, 12520, 12521, 12528, 12537, 12541, 17002, 17008, 17410, 25408};
+
+    private SqlErrorClassifier() {
+    }
+
+    public static void directBorrow(boolean direct) {
+        DIRECT_BORROW.get()[0] = direct;
+    }
+
+    public static Kind classify(Throwable error) {
+        if (error instanceof CircuitBreaker.CircuitOpenException) return Kind.SHED;
+        if (poolExhausted(error)) return Kind.POOL_EXHAUSTED;
+
+        SQLException sql = sqlCause(error);
+        if (sql == null) return Kind.FATAL;
+
+        int code = errorCode(sql);
+        if (contains(ROUTING_STALE_CODES, code)) return Kind.ROUTING_STALE;
+        if (code == ORA_NO_PARTITION && DIRECT_BORROW.get()[0]) return Kind.ROUTING_STALE;
+        if (contains(TRANSIENT_CODES, code)) return Kind.TRANSIENT;
+        if (sql instanceof SQLTransientException || sql instanceof SQLRecoverableException) return Kind.TRANSIENT;
+        return Kind.FATAL;
+    }
+
+    public static int errorCode(Throwable error) {
+        SQLException sql = sqlCause(error);
+        if (sql == null) return 0;
+        if (sql.getErrorCode() != 0) return sql.getErrorCode();
+
+        String msg = sql.getMessage();
+        int at = msg == null ? -1 : msg.indexOf("ORA-");
+        if (at < 0 || msg.length() < at + 9) return 0;
+        try {
+            return Integer.parseInt(msg.substring(at + 4, at + 9));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // UCP reports borrow timeouts with SQL error code 0, either wrapping a UniversalConnectionPoolException or only in the message.
+    private static boolean poolExhausted(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof UniversalConnectionPoolException && contains(POOL_EXHAUSTED_CODES, ((UniversalConnectionPoolException) t).getErrorCode())) return true;
+            String msg = t.getMessage();
+            if (msg != null && (msg.contains("UCP-29:") || msg.contains("UCP-45067:"))) return true;
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+
+    private static SQLException sqlCause(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) return (SQLException) t;
+            if (t.getCause() == t) break;
+        }
+        return null;
+    }
+
+    private static boolean contains(int[] codes, int code) {
+        for (int c : codes) if (c == code) return true;
+        return false;
+    }
+}
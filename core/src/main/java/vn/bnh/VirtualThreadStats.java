@@ -0,0 +1,74 @@
+package vn.bnh;
+
+import jdk.jfr.consumer.RecordingStream;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class VirtualThreadStats {
+
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreadStats.class.getName());
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String CARRIER_THREAD_CLASS = "jdk.internal.misc.CarrierThread";
+
+    private final RecordingStream pinnedEvents = new RecordingStream();
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private final AtomicLong pinnedNanos = new AtomicLong();
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Map<Long, Long> carrierCpuNanos = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sampler;
+    private final long startNs = System.nanoTime();
+
+    private VirtualThreadStats() {
+        pinnedEvents.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(Env.getLong("PINNED_THRESHOLD_MS", 1)));
+        pinnedEvents.onEvent(PINNED_EVENT, e -> {
+            pinnedCount.incrementAndGet();
+            pinnedNanos.addAndGet(e.getDuration().toNanos());
+        });
+        pinnedEvents.startAsync();
+
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "carrier-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        sampler.scheduleAtFixedRate(this::sampleCarriers, 1, 1, TimeUnit.SECONDS);
+    }
+
+    static VirtualThreadStats start() {
+        return new VirtualThreadStats();
+    }
+
+    void finish(String mode) throws InterruptedException {
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.MINUTES);
+        sampleCarriers();
+        pinnedEvents.close();
+
+        long elapsedNs = System.nanoTime() - startNs;
+        int parallelism = Integer.getInteger("jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors());
+        long cpuNs = carrierCpuNanos.values().stream().mapToLong(Long::longValue).sum();
+        double utilisation = elapsedNs <= 0 ? 0 : 100.0 * cpuNs / ((double) elapsedNs * parallelism);
+
+        LOGGER.log(Level.INFO, "VTHREAD_SUMMARY mode={0} pinned_events={1} pinned_ms={2} carriers={3} parallelism={4} carrier_cpu_ms={5} carrier_util_pct={6}", new Object[]{mode, pinnedCount.get(), TimeUnit.NANOSECONDS.toMillis(pinnedNanos.get()), carrierCpuNanos.size(), parallelism, TimeUnit.NANOSECONDS.toMillis(cpuNs), String.format("%.1f", utilisation)});
+    }
+
+    // Carrier threads can retire when idle, so keep the last CPU time seen for each one.
+    private void sampleCarriers() {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (!CARRIER_THREAD_CLASS.equals(t.getClass().getName())) continue;
+            long cpu = threads.getThreadCpuTime(t.getId());
+            if (cpu > 0) carrierCpuNanos.merge(t.getId(), cpu, Math::max);
+        }
+    }
+}
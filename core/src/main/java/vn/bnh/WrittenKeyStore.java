@@ -0,0 +1,103 @@
+package vn.bnh;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Append-only store of committed IDs kept off-heap in 8 MiB segments that are allocated as the run writes.
+public final class WrittenKeyStore {
+
+    private static final Logger LOGGER = Logger.getLogger(WrittenKeyStore.class.getName());
+    private static final VarHandle SLOT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_KEYS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_KEYS - 1;
+
+    private final long capacity;
+    private final AtomicReferenceArray<ByteBuffer> segments;
+    private final AtomicLong next = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    public WrittenKeyStore(long capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.segments = new AtomicReferenceArray<>((int) ((capacity + SEGMENT_KEYS - 1) >>> SEGMENT_SHIFT));
+        MetricsRegistry.gauge("written_keys", "Committed keys held for read-back", this::size);
+        MetricsRegistry.counter("written_keys_dropped_total", "Committed keys not kept because KEY_TRACKER_CAPACITY was reached", dropped::sum);
+    }
+
+    // Returns null unless KEY_TRACKER_CAPACITY is positive.
+    public static WrittenKeyStore fromEnv() {
+        long capacity = Env.getLong("KEY_TRACKER_CAPACITY", 0);
+        if (capacity <= 0) return null;
+        LOGGER.log(Level.INFO, "KEY_TRACKER capacity={0} max_off_heap_mb={1}", new Object[]{String.valueOf(capacity), String.valueOf(capacity * Long.BYTES >> 20)});
+        return new WrittenKeyStore(capacity);
+    }
+
+    public void record(long key) {
+        long index = next.getAndIncrement();
+        if (index >= capacity) {
+            dropped.increment();
+            return;
+        }
+        SLOT.setRelease(segment((int) (index >>> SEGMENT_SHIFT)), (int) (index & SEGMENT_MASK) * Long.BYTES, key);
+    }
+
+    public void record(long[] keys, int n) {
+        long first = next.getAndAdd(n);
+        for (int i = 0; i < n; i++) {
+            long index = first + i;
+            if (index >= capacity) {
+                dropped.add(n - i);
+                return;
+            }
+            SLOT.setRelease(segment((int) (index >>> SEGMENT_SHIFT)), (int) (index & SEGMENT_MASK) * Long.BYTES, keys[i]);
+        }
+    }
+
+    public long size() {
+        return Math.min(next.get(), capacity);
+    }
+
+    // Zero when the slot is reserved but its writer has not stored the key yet.
+    public long get(long index) {
+        ByteBuffer segment = segments.get((int) (index >>> SEGMENT_SHIFT));
+        if (segment == null) return 0;
+        return (long) SLOT.getAcquire(segment, (int) (index & SEGMENT_MASK) * Long.BYTES);
+    }
+
+    // Uniformly random committed key, or zero while the store is empty.
+    public long sample() {
+        long size = size();
+        return size == 0 ? 0 : get(ThreadLocalRandom.current().nextLong(size));
+    }
+
+    public void logStats(String mode) {
+        LOGGER.log(Level.INFO, "KEY_TRACKER_STATS mode={0} keys={1} dropped={2} segments={3}", new Object[]{mode, String.valueOf(size()), String.valueOf(dropped.sum()), String.valueOf(allocatedSegments())});
+    }
+
+    private ByteBuffer segment(int s) {
+        ByteBuffer segment = segments.get(s);
+        if (segment != null) return segment;
+
+        int keys = (int) Math.min(SEGMENT_KEYS, capacity - ((long) s << SEGMENT_SHIFT));
+        ByteBuffer allocated = ByteBuffer.allocateDirect(keys * Long.BYTES).order(ByteOrder.nativeOrder());
+        return segments.compareAndSet(s, null, allocated) ? allocated : segments.get(s);
+    }
+
+    private int allocatedSegments() {
+        int count = 0;
+        for (int i = 0; i < segments.length(); i++) {
+            if (segments.get(i) != null) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,125 @@
+package vn.bnh;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Read-back phase: point-selects sampled written keys, timing each probe and counting present/missing rows per location.
+public final class WrittenKeyVerifier {
+
+    private static final Logger LOGGER = Logger.getLogger(WrittenKeyVerifier.class.getName());
+    private static final int MAX_MISSING_LOGGED = 20;
+
+    private WrittenKeyVerifier() {
+    }
+
+    // No-op unless a store is configured and VERIFY_SAMPLES is positive.
+    public static void runIfConfigured(String mode, WrittenKeyStore keys, Probe probe) throws Exception {
+        long samples = Env.getLong("VERIFY_SAMPLES", 0);
+        if (keys == null || samples <= 0) return;
+        if (keys.size() == 0) {
+            LOGGER.log(Level.WARNING, "VERIFY_SKIPPED mode={0} reason=no_keys", mode);
+            return;
+        }
+        run(mode, keys, Math.min(samples, keys.size()), Env.getInt("VERIFY_THREADS", 8), probe);
+    }
+
+    public static void run(String mode, WrittenKeyStore keys, long samples, int threads, Probe probe) throws Exception {
+        LOGGER.log(Level.INFO, "VERIFY_START mode={0} samples={1} threads={2} keys={3}", new Object[]{mode, String.valueOf(samples), threads, String.valueOf(keys.size())});
+
+        Histogram latency = new ConcurrentHistogram(3);
+        ConcurrentMap<String, Counts> byLocation = new ConcurrentHashMap<>();
+        AtomicLong remaining = new AtomicLong(samples);
+        LongAdder errors = new LongAdder();
+        LongAdder missingLogged = new LongAdder();
+
+        long startNs = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    while (remaining.getAndDecrement() > 0) {
+                        long key = keys.sample();
+                        if (key == 0) continue;
+                        try {
+                            long probeNs = System.nanoTime();
+                            Result result = probe.check(key);
+                            latency.recordValue(System.nanoTime() - probeNs);
+
+                            Counts counts = byLocation.computeIfAbsent(result.location, k -> new Counts());
+                            if (result.present) {
+                                counts.present.increment();
+                            } else {
+                                counts.missing.increment();
+                                if (missingLogged.sum() < MAX_MISSING_LOGGED) {
+                                    missingLogged.increment();
+                                    LOGGER.log(Level.WARNING, "VERIFY_MISSING mode={0} key={1} location={2}", new Object[]{mode, String.valueOf(key), result.location});
+                                }
+                            }
+                        } catch (Exception e) {
+                            errors.increment();
+                            LOGGER.log(Level.WARNING, "VERIFY_ERROR mode={0} key={1} msg={2}", new Object[]{mode, String.valueOf(key), e.getMessage()});
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedNs = System.nanoTime() - startNs;
+
+        long present = 0;
+        long missing = 0;
+        for (Map.Entry<String, Counts> e : new TreeMap<>(byLocation).entrySet()) {
+            long p = e.getValue().present.sum();
+            long m = e.getValue().missing.sum();
+            present += p;
+            missing += m;
+            LOGGER.log(Level.INFO, "VERIFY_LOCATION mode={0} location={1} checked={2} present={3} missing={4}", new Object[]{mode, e.getKey(), String.valueOf(p + m), String.valueOf(p), String.valueOf(m)});
+        }
+
+        long checked = latency.getTotalCount();
+        long opsPerSecond = elapsedNs <= 0 ? 0 : Math.round(checked * 1e9 / elapsedNs);
+        LOGGER.log(Level.INFO, "VERIFY_SUMMARY mode={0} checked={1} present={2} missing={3} errors={4} ops_s={5} p50_us={6} p99_us={7} p999_us={8} max_us={9}", new Object[]{mode, String.valueOf(checked), String.valueOf(present), String.valueOf(missing), String.valueOf(errors.sum()), String.valueOf(opsPerSecond), micros(latency.getValueAtPercentile(50)), micros(latency.getValueAtPercentile(99)), micros(latency.getValueAtPercentile(99.9)), micros(latency.getMaxValue())});
+    }
+
+    private static String micros(long nanos) {
+        return String.valueOf(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    @FunctionalInterface
+    public interface Probe {
+        Result check(long key) throws Exception;
+    }
+
+    public static final class Result {
+        final String location;
+        final boolean present;
+
+        public Result(String location, boolean present) {
+            this.location = location == null ? "unknown" : location;
+            this.present = present;
+        }
+    }
+
+    private static final class Counts {
+        final LongAdder present = new LongAdder();
+        final LongAdder missing = new LongAdder();
+    }
+}
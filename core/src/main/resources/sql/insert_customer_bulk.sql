@@ -0,0 +1,90 @@
+CREATE OR REPLACE TYPE T_VARCHAR_TAB AS TABLE OF VARCHAR2(4000);
+/
+
+CREATE OR REPLACE TYPE T_DATE_TAB AS TABLE OF DATE;
+/
+
+CREATE OR REPLACE PROCEDURE INSERT_CUSTOMER_BULK (
+    p_cust_id           IN T_CUST_ID_TAB,
+    p_cust_type         IN T_VARCHAR_TAB,
+    p_name              IN T_VARCHAR_TAB,
+    p_birth_date        IN T_DATE_TAB,
+    p_sex               IN T_VARCHAR_TAB,
+    p_nationality       IN T_VARCHAR_TAB,
+    p_vip               IN T_VARCHAR_TAB,
+    p_status            IN T_VARCHAR_TAB,
+    p_area_code         IN T_VARCHAR_TAB,
+    p_province          IN T_VARCHAR_TAB,
+    p_district          IN T_VARCHAR_TAB,
+    p_precinct          IN T_VARCHAR_TAB,
+    p_street_block      IN T_VARCHAR_TAB,
+    p_street            IN T_VARCHAR_TAB,
+    p_street_name       IN T_VARCHAR_TAB,
+    p_street_block_name IN T_VARCHAR_TAB,
+    p_home              IN T_VARCHAR_TAB,
+    p_address           IN T_VARCHAR_TAB,
+    p_create_user       IN T_VARCHAR_TAB,
+    p_create_datetime   IN T_DATE_TAB,
+    p_update_datetime   IN T_DATE_TAB,
+    p_update_user       IN T_VARCHAR_TAB,
+    p_description       IN T_VARCHAR_TAB,
+    p_update_number2    IN T_CUST_ID_TAB,
+    p_last_modified     IN T_DATE_TAB,
+    p_parent_id         IN T_CUST_ID_TAB
+) IS
+BEGIN
+FORALL i IN 1 .. p_cust_id.COUNT
+INSERT INTO CUSTOMER_T1 (CUST_ID,
+                         CUST_TYPE,
+                         NAME,
+                         BIRTH_DATE,
+                         SEX,
+                         NATIONALITY,
+                         VIP,
+                         STATUS,
+                         AREA_CODE,
+                         PROVINCE,
+                         DISTRICT,
+                         PRECINCT,
+                         STREET_BLOCK,
+                         STREET,
+                         STREET_NAME,
+                         STREET_BLOCK_NAME,
+                         HOME,
+                         ADDRESS,
+                         CREATE_USER,
+                         CREATE_DATETIME,
+                         UPDATE_DATETIME,
+                         UPDATE_USER,
+                         DESCRIPTION,
+                         UPDATE_NUMBER2,
+                         LAST_MODIFIED,
+                         PARENT_ID)
+VALUES (p_cust_id(i),
+        p_cust_type(i),
+        p_name(i),
+        p_birth_date(i),
+        p_sex(i),
+        p_nationality(i),
+        p_vip(i),
+        p_status(i),
+        p_area_code(i),
+        p_province(i),
+        p_district(i),
+        p_precinct(i),
+        p_street_block(i),
+        p_street(i),
+        p_street_name(i),
+        p_street_block_name(i),
+        p_home(i),
+        p_address(i),
+        p_create_user(i),
+        p_create_datetime(i),
+        p_update_datetime(i),
+        p_update_user(i),
+        p_description(i),
+        p_update_number2(i),
+        p_last_modified(i),
+        p_parent_id(i));
+END;
+/
@@ -0,0 +1,122 @@
+package vn.bnh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Per-shard AIMD limit on in-flight batches for ShardWriterPipeline (PIPELINE=true with ADAPTIVE=true); maxLimit is
+// ADAPT_MAX_IN_FLIGHT and must not exceed the writer lanes started for the shard.
+final class AdaptiveShardController {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveShardController.class.getName());
+
+    private final String shardName;
+    private final int maxLimit;
+    private final int minBatch;
+    private final int maxBatch;
+    private final int batchStep;
+    private final long targetLatencyNs;
+    private final long intervalNs;
+
+    private int limit = 1;
+    private int batchSize;
+    private int inFlight;
+
+    private long windowStartNs = System.nanoTime();
+    private long windowCalls;
+    private long windowLatencyNs;
+    private int windowFailures;
+    private int windowOra05086;
+    private int windowOra45582;
+
+    AdaptiveShardController(String shardName, int initialBatch, int minBatch, int maxBatch, int maxLimit, long targetLatencyMs, long intervalMs) {
+        if (minBatch <= 0 || maxBatch < minBatch || maxLimit <= 0) throw new IllegalArgumentException();
+        this.shardName = shardName;
+        this.maxLimit = maxLimit;
+        this.minBatch = minBatch;
+        this.maxBatch = maxBatch;
+        this.batchStep = Math.max(1, minBatch);
+        this.batchSize = Math.max(minBatch, Math.min(maxBatch, initialBatch));
+        this.targetLatencyNs = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.intervalNs = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        log("initial", 0, 0);
+    }
+
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= limit) wait();
+        inFlight++;
+    }
+
+    synchronized int batchSize() {
+        return batchSize;
+    }
+
+    synchronized void release(long latencyNs) {
+        inFlight--;
+        windowCalls++;
+        windowLatencyNs += latencyNs;
+        decideIfDue();
+        notifyAll();
+    }
+
+    // A call that failed after retries; counts against the window like an ORA signal.
+    synchronized void releaseFailed() {
+        inFlight--;
+        windowFailures++;
+        decideIfDue();
+        notifyAll();
+    }
+
+    // The slot was taken but nothing was queued, so there is no outcome to learn from.
+    synchronized void releaseIdle() {
+        inFlight--;
+        notifyAll();
+    }
+
+    synchronized void onOraError(int errorCode) {
+        if (errorCode == 5086) windowOra05086++;
+        else if (errorCode == 45582) windowOra45582++;
+    }
+
+    private void decideIfDue() {
+        long now = System.nanoTime();
+        if (now - windowStartNs < intervalNs) return;
+
+        long avgLatencyNs = windowCalls == 0 ? 0 : windowLatencyNs / windowCalls;
+
+        if (windowOra05086 > 0) {
+            decrease();
+            log("ora05086", avgLatencyNs, windowOra05086);
+        } else if (windowOra45582 > 0) {
+            limit = Math.max(1, limit / 2);
+            log("ora45582", avgLatencyNs, windowOra45582);
+        } else if (windowFailures > 0) {
+            decrease();
+            log("failures", avgLatencyNs, windowFailures);
+        } else if (windowCalls > 0 && avgLatencyNs > targetLatencyNs) {
+            decrease();
+            log("latency", avgLatencyNs, 0);
+        } else if (windowCalls > 0 && (limit < maxLimit || batchSize < maxBatch)) {
+            // Additive increase: widen concurrency first, then grow the batch.
+            if (limit < maxLimit) limit++;
+            else batchSize = Math.min(maxBatch, batchSize + batchStep);
+            log("headroom", avgLatencyNs, 0);
+        }
+
+        windowStartNs = now;
+        windowCalls = 0;
+        windowLatencyNs = 0;
+        windowFailures = 0;
+        windowOra05086 = 0;
+        windowOra45582 = 0;
+    }
+
+    private void decrease() {
+        if (limit > 1) limit = Math.max(1, limit / 2);
+        else batchSize = Math.max(minBatch, batchSize / 2);
+    }
+
+    private void log(String reason, long avgLatencyNs, int errors) {
+        LOGGER.log(Level.INFO, "ADAPT shard={0} limit={1} batch={2} reason={3} avg_latency_ms={4} errors={5}", new Object[]{shardName, limit, batchSize, reason, TimeUnit.NANOSECONDS.toMillis(avgLatencyNs), errors});
+    }
+}
@@ -0,0 +1,96 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Snowflake inserts over asynchronous, pipelined connections: each worker keeps one shard connection with
+// ASYNC_IN_FLIGHT autocommit inserts outstanding, fed from shard-bucketed IDs so every key belongs to that shard.
+public final class AsyncCustomerGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncCustomerGenerator.class.getName());
+    private static final SnowflakeGenerator ID_GENERATOR = new SnowflakeGenerator();
+    private static final String MODE = "snowflake_async";
+
+    private AsyncCustomerGenerator() {
+    }
+
+    public static void run() {
+        try {
+            int workerThreads = Integer.parseInt(DataGeneratorUtils.requireEnv("THREADS"));
+            long durationSeconds = Long.parseLong(DataGeneratorUtils.requireEnv("DURATION"));
+            int inFlight = AsyncStatementPipeline.inFlightFromEnv();
+            int refill = Math.max(inFlight * 4, 32);
+            int bucketCapacity = Integer.parseInt(DataGeneratorUtils.optionalEnv("ID_BUCKET_CAPACITY", String.valueOf(refill * 2)));
+
+            LOGGER.log(Level.INFO, "START mode={0} threads={1} duration_s={2} in_flight={3}", new Object[]{MODE, workerThreads, durationSeconds, inFlight});
+
+            // Workers hold their connection across operations, so the pool needs one per worker regardless of MAX_IN_FLIGHT.
+            PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_SEQ_URL", workerThreads);
+            ShardRouter router = ShardRouter.forPool(gdsPool);
+            ShardBucketedIdSource ids = new ShardBucketedIdSource(ID_GENERATOR, router, bucketCapacity);
+            ThreadLocal<Lane> lanes = ThreadLocal.withInitial(() -> new Lane(refill));
+
+            long startNs = System.nanoTime();
+            DataGeneratorUtils.runForDuration(MODE, workerThreads, durationSeconds, () -> {
+                Lane lane = lanes.get();
+                try {
+                    if (lane.pipeline == null || lane.pipeline.broken()) lane.open(gdsPool, ids, inFlight);
+                    else if (lane.next == lane.buffer.length) lane.refill(ids);
+                    lane.pipeline.submit(lane.buffer[lane.next++], DataGeneratorUtils::bindCustomer);
+                } catch (Exception e) {
+                    DataGeneratorUtils.recordFailure(LOGGER, MODE, e);
+                }
+            }, () -> lanes.get().close());
+            AsyncStatementPipeline.logSummary(MODE, inFlight, System.nanoTime() - startNs);
+
+            ids.logStats(MODE);
+            router.logStats(MODE);
+            DataGeneratorUtils.afterRun(MODE, gdsPool);
+            LOGGER.log(Level.INFO, "END mode={0}", MODE);
+        } catch (Exception e) {
+            DataGeneratorUtils.logFatalAndExit(LOGGER, MODE, e);
+        }
+    }
+
+    // One worker's shard connection and the unsent IDs that belong to its shard.
+    private static final class Lane {
+        final long[] buffer;
+        int next;
+        int shardIndex;
+        AsyncStatementPipeline pipeline;
+
+        Lane(int refill) {
+            this.buffer = new long[refill];
+        }
+
+        // The shard is whichever bucket fills first; unsent IDs from a broken connection are dropped because their chunk may have moved.
+        void open(PoolDataSource gdsPool, ShardBucketedIdSource ids, int inFlight) throws Exception {
+            close();
+            shardIndex = ids.next(buffer, buffer.length);
+            next = 0;
+            Connection conn = DataGeneratorUtils.openConnectionByShardKey(gdsPool, BigDecimal.valueOf(buffer[0]));
+            try {
+                pipeline = new AsyncStatementPipeline(MODE, conn, DataGeneratorUtils.SQL_INSERT_CUSTOMER_ROW, inFlight, DataGeneratorUtils.KEYS);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+        }
+
+        void refill(ShardBucketedIdSource ids) throws Exception {
+            ids.next(shardIndex, buffer, buffer.length);
+            next = 0;
+        }
+
+        void close() {
+            if (pipeline == null) return;
+            pipeline.close();
+            pipeline = null;
+        }
+    }
+}
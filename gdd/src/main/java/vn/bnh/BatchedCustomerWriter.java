@@ -0,0 +1,157 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+final class BatchedCustomerWriter implements AutoCloseable {
+
+    private final PoolDataSource gdsPool;
+    private final ShardRouter router;
+    private final int rowsPerExecute;
+    private final int executesPerCommit;
+    private final List<ShardBatch> batches = new ArrayList<>();
+
+    BatchedCustomerWriter(PoolDataSource gdsPool, ShardRouter router, int rowsPerExecute, int executesPerCommit) {
+        if (rowsPerExecute <= 0 || executesPerCommit <= 0) throw new IllegalArgumentException();
+        this.gdsPool = gdsPool;
+        this.router = router;
+        this.rowsPerExecute = rowsPerExecute;
+        this.executesPerCommit = executesPerCommit;
+    }
+
+    void add(long customerId) throws Exception {
+        ShardBatch batch = batch(router.resolveShardIndex(customerId));
+        batch.ids[batch.size++] = customerId;
+        if (batch.size == rowsPerExecute) execute(batch);
+    }
+
+    @Override
+    public void close() throws Exception {
+        Exception failure = null;
+        for (ShardBatch batch : batches) {
+            if (batch == null) continue;
+            try {
+                execute(batch);
+                if (batch.pendingSize > 0) write(batch, true);
+            } catch (Exception e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    private ShardBatch batch(int shardIndex) {
+        while (batches.size() <= shardIndex) batches.add(null);
+        ShardBatch batch = batches.get(shardIndex);
+        if (batch == null) {
+            batch = new ShardBatch(rowsPerExecute, executesPerCommit, CircuitBreaker.forName("shard:" + router.shardName(shardIndex)));
+            batches.set(shardIndex, batch);
+        }
+        return batch;
+    }
+
+    private void execute(ShardBatch batch) throws Exception {
+        if (batch.size == 0) return;
+        System.arraycopy(batch.ids, 0, batch.pending, batch.pendingSize, batch.size);
+        batch.pendingSize += batch.size;
+        batch.size = 0;
+        write(batch, ++batch.executes == executesPerCommit);
+    }
+
+    // Executes the pending rows not yet sent on the open transaction and optionally commits. A failed attempt rolls the
+    // transaction back, so the retry replays every uncommitted row on a fresh connection; once retries are exhausted
+    // those rows are dropped and the error goes to the caller.
+    private void write(ShardBatch batch, boolean commit) throws Exception {
+        BigDecimal routeKey = BigDecimal.valueOf(batch.pending[0]);
+        try {
+            DataGeneratorUtils.RETRY.call(batch.breaker, () -> {
+                try {
+                    send(batch, routeKey, commit);
+                } catch (Exception e) {
+                    // The connection may be dead; a failed rollback must not replace the error RETRY classifies.
+                    try {
+                        batch.release(true);
+                    } catch (Exception rollback) {
+                        e.addSuppressed(rollback);
+                    }
+                    throw e;
+                }
+                return null;
+            }, DataGeneratorUtils.oraObserver(gdsPool, "batched_insert_customer", routeKey, null));
+        } catch (Exception e) {
+            batch.clear();
+            throw e;
+        }
+    }
+
+    private void send(ShardBatch batch, BigDecimal routeKey, boolean commit) throws Exception {
+        if (batch.conn == null) {
+            batch.conn = DataGeneratorUtils.openConnectionByShardKey(gdsPool, routeKey);
+            batch.conn.setAutoCommit(false);
+            batch.ps = batch.conn.prepareStatement(DataGeneratorUtils.SQL_INSERT_CUSTOMER_ROW);
+        }
+
+        while (batch.executed < batch.pendingSize) {
+            int n = Math.min(rowsPerExecute, batch.pendingSize - batch.executed);
+            for (int i = 0; i < n; i++) {
+                DataGeneratorUtils.bindCustomer(batch.ps, batch.pending[batch.executed + i]);
+                batch.ps.addBatch();
+            }
+
+            long startNs = System.nanoTime();
+            batch.ps.executeBatch();
+            RunMetrics.EXECUTE.recordSince(startNs);
+            batch.executed += n;
+        }
+        if (!commit) return;
+
+        long startNs = System.nanoTime();
+        batch.conn.commit();
+        RunMetrics.COMMIT.recordSince(startNs);
+        RunMetrics.rowsWritten(batch.pendingSize);
+        if (DataGeneratorUtils.KEYS != null) DataGeneratorUtils.KEYS.record(batch.pending, batch.pendingSize);
+        batch.release(false);
+        batch.clear();
+    }
+
+    private static final class ShardBatch {
+        final long[] ids;
+        // Rows of the open transaction, kept so a failed attempt can replay them.
+        final long[] pending;
+        final CircuitBreaker breaker;
+        int size;
+        int pendingSize;
+        int executed;
+        int executes;
+        Connection conn;
+        PreparedStatement ps;
+
+        ShardBatch(int rowsPerExecute, int executesPerCommit, CircuitBreaker breaker) {
+            this.ids = new long[rowsPerExecute];
+            this.pending = new long[rowsPerExecute * executesPerCommit];
+            this.breaker = breaker;
+        }
+
+        void clear() {
+            pendingSize = 0;
+            executed = 0;
+            executes = 0;
+        }
+
+        void release(boolean rollback) throws Exception {
+            executed = 0;
+            Connection c = conn;
+            PreparedStatement p = ps;
+            conn = null;
+            ps = null;
+            try (Connection closeConn = c; PreparedStatement closePs = p) {
+                if (rollback && closeConn != null) closeConn.rollback();
+            }
+        }
+    }
+}
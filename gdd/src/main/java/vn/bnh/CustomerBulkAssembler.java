@@ -0,0 +1,79 @@
+package vn.bnh;
+
+import oracle.jdbc.OracleConnection;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+
+final class CustomerBulkAssembler {
+
+    static final String SQL_CALL_INSERT_CUSTOMER_BULK = "{ call INSERT_CUSTOMER_BULK(?, " + CustomerPayloadGenerator.BIND_MARKERS + ") }";
+
+    private static final String ORACLE_TYPE_VARCHAR_TABLE = "T_VARCHAR_TAB";
+    private static final String ORACLE_TYPE_DATE_TABLE = "T_DATE_TAB";
+
+    private static final CustomerPayloadGenerator PAYLOAD = DataGeneratorUtils.PAYLOAD != null ? DataGeneratorUtils.PAYLOAD : CustomerPayloadGenerator.configured();
+    private static final ThreadLocal<CustomerBulkAssembler> LOCAL = ThreadLocal.withInitial(CustomerBulkAssembler::new);
+
+    private final Object[] row = new Object[CustomerPayloadGenerator.COLUMN_COUNT];
+    private final Object[][] columns = new Object[CustomerPayloadGenerator.COLUMN_COUNT][];
+    private int capacity;
+
+    private CustomerBulkAssembler() {
+    }
+
+    static void bind(Connection conn, CallableStatement cs, long[] customerIds, int count) throws SQLException {
+        long startNs = System.nanoTime();
+        LOCAL.get().assemble(conn.unwrap(OracleConnection.class), cs, customerIds, count);
+        RunMetrics.ASSEMBLY.recordSince(startNs);
+    }
+
+    private void assemble(OracleConnection conn, CallableStatement cs, long[] customerIds, int n) throws SQLException {
+        if (n > capacity) grow(n);
+
+        for (int i = 0; i < n; i++) {
+            PAYLOAD.fill(row);
+            for (int c = 0; c < row.length; c++) columns[c][i] = row[c];
+        }
+
+        cs.setArray(1, conn.createOracleArray(DataGeneratorUtils.ORACLE_TYPE_CUST_ID_TABLE, DataGeneratorUtils.exactIds(customerIds, n)));
+        for (int c = 0; c < columns.length; c++) {
+            // Full batches bind the reused buffers directly; only a short tail batch is copied.
+            Object[] values = n == capacity ? columns[c] : Arrays.copyOf(columns[c], n);
+            cs.setArray(c + 2, conn.createOracleArray(oracleType(CustomerPayloadGenerator.COLUMN_TYPES[c]), values));
+        }
+    }
+
+    private void grow(int n) {
+        for (int c = 0; c < columns.length; c++) {
+            switch (CustomerPayloadGenerator.COLUMN_TYPES[c]) {
+                case Types.TIMESTAMP:
+                    columns[c] = new Timestamp[n];
+                    break;
+                case Types.NUMERIC:
+                    columns[c] = new BigDecimal[n];
+                    break;
+                default:
+                    columns[c] = new String[n];
+            }
+        }
+        capacity = n;
+    }
+
+    private static String oracleType(int sqlType) {
+        switch (sqlType) {
+            case Types.TIMESTAMP:
+                return ORACLE_TYPE_DATE_TABLE;
+            case Types.NUMERIC:
+                return DataGeneratorUtils.ORACLE_TYPE_CUST_ID_TABLE;
+            default:
+                return ORACLE_TYPE_VARCHAR_TABLE;
+        }
+    }
+}
@@ -15,10 +15,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,6 +29,15 @@ final class DataGeneratorUtils {
 
     static final String SQL_INSERT_CUSTOMER = "INSERT INTO CUSTOMER_T1 (CUST_ID, CUST_TYPE, NAME, BIRTH_DATE, SEX, NATIONALITY, VIP, STATUS, AREA_CODE, PROVINCE, DISTRICT, PRECINCT, STREET_BLOCK, STREET, STREET_NAME, STREET_BLOCK_NAME, HOME, ADDRESS, CREATE_USER, CREATE_DATETIME, UPDATE_DATETIME, UPDATE_USER, DESCRIPTION, UPDATE_NUMBER2, LAST_MODIFIED, PARENT_ID) " + "VALUES (?, 'VIE', 'TEST DIA BAN', TO_DATE('2025-06-05 09:22:51', 'YYYY-MM-DD HH24:MI:SS'), 'M', 'Việt Nam', NULL, '1', 'HNI0400060', 'HNI', NULL, '040', '0060', NULL, NULL, 'Tổ 1-Bồ Đề', NULL, 'Tổ 1-Bồ Đề, Phường Bồ Đề Thành phố Hà Nội', 'VTT1', TO_DATE('2025-06-12 14:02:28', 'YYYY-MM-DD HH24:MI:SS'), TO_DATE('2025-10-14 18:17:39', 'YYYY-MM-DD HH24:MI:SS'), 'VTT1', NULL, NULL, NULL, NULL)";
 
+    static final CustomerPayloadGenerator PAYLOAD = CustomerPayloadGenerator.fromEnv();
+    static final String SQL_INSERT_CUSTOMER_ROW = PAYLOAD == null ? SQL_INSERT_CUSTOMER : "INSERT INTO CUSTOMER_T1 (CUST_ID, " + CustomerPayloadGenerator.COLUMNS + ") VALUES (?, " + CustomerPayloadGenerator.BIND_MARKERS + ")";
+
+    static final WrittenKeyStore KEYS = WrittenKeyStore.fromEnv();
+    // The shard identity ShardRouter indexes probed shards by; anything compared with a router name must select the same.
+    // It is the name the shard catalog gives the shard: DB_UNIQUE_NAME, suffixed with _<PDB> when the shard is a PDB.
+    static final String SQL_SHARD_NAME = "SELECT SYS_CONTEXT('USERENV', 'DB_UNIQUE_NAME') || DECODE(SYS_CONTEXT('USERENV', 'CON_ID'), '0', NULL, '1', NULL, '_' || SYS_CONTEXT('USERENV', 'CON_NAME')) FROM DUAL";
+    static final String SQL_VERIFY_CUSTOMER = "SELECT d.name, (SELECT COUNT(*) FROM CUSTOMER_T1 WHERE CUST_ID = ?) FROM v$database d";
+
     static final String SQL_CALL_INSERT_CUSTOMER_BATCH = "{ call INSERT_CUSTOMER_BATCH(?) }";
     static final String ORACLE_TYPE_CUST_ID_TABLE = "T_CUST_ID_TAB";
 
@@ -33,17 +45,36 @@ final class DataGeneratorUtils {
 
     private static final AtomicLong ORA_45582_TOTAL = new AtomicLong(0);
     private static final AtomicLong ORA_05086_TOTAL = new AtomicLong(0);
+    private static final EventLog.Event ORA45582 = EventLog.event("ORA45582", Level.WARNING).number("total").text("phase").text("pool").text("key").text("msg");
+    private static final EventLog.Event ORA05086 = EventLog.event("ORA05086", Level.WARNING).number("total").text("phase").text("key").text("msg");
+
+    static final RetryPolicy RETRY = RetryPolicy.fromEnv();
 
     private static final AtomicLong LAST_ROUTING_REFRESH_MS = new AtomicLong(0);
+    private static final AtomicLong ROUTING_REFRESHES = new AtomicLong(0);
     private static final long ROUTING_REFRESH_COOLDOWN_MS = 5_000;
+    private static final List<Runnable> ROUTING_INVALIDATION_LISTENERS = new CopyOnWriteArrayList<>();
+    private static final Map<PoolDataSource, DirectShardPools> DIRECT_POOLS = new ConcurrentHashMap<>();
+
+    static {
+        MetricsRegistry.counter("ora_errors_total", "ORA errors observed on the retry path, including retried ones", ORA_45582_TOTAL::get, "code", "45582");
+        MetricsRegistry.counter("ora_errors_total", "ORA errors observed on the retry path, including retried ones", ORA_05086_TOTAL::get, "code", "5086");
+        MetricsRegistry.counter("routing_refreshes_total", "UCP pool refreshes triggered by ORA-45582", ROUTING_REFRESHES::get);
+    }
 
     private DataGeneratorUtils() {
     }
 
     static String requireEnv(String key) {
-        String value = System.getenv(key);
-        if (value == null || value.isEmpty()) throw new IllegalStateException("Missing env: " + key);
-        return value;
+        return Env.require(key);
+    }
+
+    static String optionalEnv(String key, String defaultValue) {
+        return Env.get(key, defaultValue);
+    }
+
+    static void addRoutingInvalidationListener(Runnable listener) {
+        ROUTING_INVALIDATION_LISTENERS.add(listener);
     }
 
     static PoolDataSource createPool(String jdbcUrlEnvKey, int workerThreads) throws Exception {
@@ -60,97 +91,257 @@ final class DataGeneratorUtils {
         pool.setInitialPoolSize(poolSize);
         pool.setMinPoolSize(poolSize);
         pool.setMaxPoolSize(poolSize);
+        pool.setMaxStatements(Integer.parseInt(optionalEnv("STATEMENT_CACHE_SIZE", "16")));
+        PoolMetrics.register(pool);
+        if (DirectShardPools.enabled() && !"CATALOG_URL".equals(jdbcUrlEnvKey)) DIRECT_POOLS.put(pool, DirectShardPools.create(pool, ShardRouter.forPool(pool), workerThreads));
         return pool;
     }
 
     static Connection openConnectionByShardKey(PoolDataSource gdsPool, BigDecimal shardKey) throws Exception {
-        return gdsPool.createConnectionBuilder().shardingKey(buildNumberShardingKey(gdsPool, shardKey)).build();
+        DirectShardPools direct = DIRECT_POOLS.get(gdsPool);
+        if (direct != null) {
+            Connection conn = direct.borrow(shardKey);
+            if (conn != null) return conn;
+        }
+        return openRoutedConnection(gdsPool, shardKey);
     }
 
-    static String resolveShardNameByShardKey(PoolDataSource gdsPool, BigDecimal shardKey) throws Exception {
-        int maxAttempts = 3;
-        long backoffMs = 100;
+    // Always borrows through the GDS pool; used where the direct shard pools would route back into themselves.
+    static Connection openRoutedConnection(PoolDataSource gdsPool, BigDecimal shardKey) throws Exception {
+        SqlErrorClassifier.directBorrow(false);
+        long startNs = System.nanoTime();
+        OracleShardingKey shardingKey = buildNumberShardingKey(gdsPool, shardKey);
+        RunMetrics.SHARDING_KEY.recordSince(startNs);
+
+        startNs = System.nanoTime();
+        Connection conn = gdsPool.createConnectionBuilder().shardingKey(shardingKey).build();
+        RunMetrics.BORROW.recordSince(startNs);
+        return conn;
+    }
 
-        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
-            try (Connection conn = openConnectionByShardKey(gdsPool, shardKey); PreparedStatement ps = conn.prepareStatement("SELECT name FROM v$database"); ResultSet rs = ps.executeQuery()) {
+    static String resolveShardNameByShardKey(PoolDataSource gdsPool, BigDecimal shardKey) throws Exception {
+        return RETRY.call(null, () -> {
+            try (Connection conn = openRoutedConnection(gdsPool, shardKey); PreparedStatement ps = conn.prepareStatement(SQL_SHARD_NAME); ResultSet rs = ps.executeQuery()) {
 
                 rs.next();
                 return rs.getString(1);
-            } catch (SQLException e) {
-                if (isOra45582(e)) {
-                    recordOra45582(gdsPool, "resolve_shard_name", shardKey, e);
-                    if (attempt == maxAttempts) throw e;
-                    Thread.sleep(backoffMs);
-                    backoffMs = Math.min(backoffMs * 2, 1_000);
-                    continue;
-                }
-                throw e;
             }
-        }
-
-        throw new IllegalStateException("unreachable");
+        }, oraObserver(gdsPool, "resolve_shard_name", shardKey, null));
     }
 
     static void insertCustomerById(PoolDataSource gdsPool, BigDecimal customerId) throws Exception {
-        try (Connection conn = openConnectionByShardKey(gdsPool, customerId); PreparedStatement ps = conn.prepareStatement(SQL_INSERT_CUSTOMER)) {
+        RETRY.call(null, () -> {
+            insertCustomer(gdsPool, customerId);
+            return null;
+        }, oraObserver(gdsPool, "insert_customer", customerId, null));
+        if (KEYS != null) KEYS.record(customerId.longValue());
+    }
+
+    static void insertCustomerById(StickySessions sessions, PoolDataSource gdsPool, BigDecimal customerId) throws Exception {
+        RETRY.call(null, () -> {
+            insertCustomer(sessions, customerId);
+            return null;
+        }, oraObserver(gdsPool, "insert_customer", customerId, null));
+        if (KEYS != null) KEYS.record(customerId.longValue());
+    }
+
+    private static void insertCustomer(PoolDataSource gdsPool, BigDecimal customerId) throws Exception {
+        try (Connection conn = openConnectionByShardKey(gdsPool, customerId); PreparedStatement ps = conn.prepareStatement(SQL_INSERT_CUSTOMER_ROW)) {
 
             conn.setAutoCommit(false);
-            ps.setBigDecimal(1, customerId);
+            bindCustomer(ps, customerId);
+
+            long startNs = System.nanoTime();
             ps.executeUpdate();
+            RunMetrics.EXECUTE.recordSince(startNs);
+
+            startNs = System.nanoTime();
             conn.commit();
+            RunMetrics.COMMIT.recordSince(startNs);
+            RunMetrics.rowsWritten(1);
         }
     }
 
-    static void callInsertCustomerBatchWithRetry(PoolDataSource gdsPool, BigDecimal routeKey, BigDecimal[] customerIds) throws Exception {
+    private static void insertCustomer(StickySessions sessions, BigDecimal customerId) throws Exception {
+        sessions.execute(customerId, session -> {
+            PreparedStatement ps = session.prepare(SQL_INSERT_CUSTOMER_ROW);
+            bindCustomer(ps, customerId);
 
-        int maxAttempts = 3;
-        long backoffMs = 200;
+            long startNs = System.nanoTime();
+            ps.executeUpdate();
+            RunMetrics.EXECUTE.recordSince(startNs);
 
-        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
-            try {
-                callInsertCustomerBatch(gdsPool, routeKey, customerIds);
-                return;
-            } catch (SQLException e) {
-                if (isOra45582(e)) {
-                    recordOra45582(gdsPool, "call_insert_customer_batch", routeKey, e);
-                    if (attempt == maxAttempts) throw e;
-                    Thread.sleep(backoffMs);
-                    backoffMs = Math.min(backoffMs * 2, 5_000);
-                    continue;
-                }
-                if (isOra05086(e)) {
-                    recordOra05086("call_insert_customer_batch", routeKey, e);
-                    if (attempt == maxAttempts) throw e;
-                    Thread.sleep(backoffMs);
-                    backoffMs = Math.min(backoffMs * 2, 5_000);
-                    continue;
+            startNs = System.nanoTime();
+            session.connection().commit();
+            RunMetrics.COMMIT.recordSince(startNs);
+            RunMetrics.rowsWritten(1);
+        });
+    }
+
+    static void bindCustomer(PreparedStatement ps, BigDecimal customerId) throws SQLException {
+        ps.setBigDecimal(1, customerId);
+        if (PAYLOAD != null) PAYLOAD.bind(ps, 2);
+    }
+
+    static void bindCustomer(PreparedStatement ps, long customerId) throws SQLException {
+        ps.setLong(1, customerId);
+        if (PAYLOAD != null) PAYLOAD.bind(ps, 2);
+    }
+
+    static void callInsertCustomerBatchWithRetry(PoolDataSource gdsPool, long[] customerIds, int count) throws Exception {
+        callInsertCustomerBatchWithRetry(gdsPool, null, customerIds, count);
+    }
+
+    static void callInsertCustomerBatchWithRetry(PoolDataSource gdsPool, StickySessions sessions, long[] customerIds, int count) throws Exception {
+        callInsertCustomerBatchWithRetry(gdsPool, sessions, null, customerIds, count, false, null);
+    }
+
+    // Inserts customerIds[0..count), which must all belong to one shard; the first ID routes the call.
+    static void callInsertCustomerBatchWithRetry(PoolDataSource gdsPool, StickySessions sessions, CircuitBreaker breaker, long[] customerIds, int count, boolean fullRows, IntConsumer oraSignal) throws Exception {
+        String sql = fullRows ? CustomerBulkAssembler.SQL_CALL_INSERT_CUSTOMER_BULK : SQL_CALL_INSERT_CUSTOMER_BATCH;
+        BigDecimal routeKey = BigDecimal.valueOf(customerIds[0]);
+        RETRY.call(breaker, () -> {
+            if (sessions == null) {
+                callInsertCustomerBatch(gdsPool, sql, routeKey, customerIds, count, fullRows);
+            } else {
+                sessions.execute(routeKey, session -> executeInsertCustomerBatch(session.connection(), session.prepareCall(sql), customerIds, count, fullRows));
+            }
+            return null;
+        }, oraObserver(gdsPool, "call_insert_customer_batch", routeKey, oraSignal));
+        if (KEYS != null) KEYS.record(customerIds, count);
+    }
+
+    // Runs one statement on the shard owning shardKey, committing DML; returns rows read or affected.
+    static int executeByShardKey(PoolDataSource gdsPool, StickySessions sessions, String phase, BigDecimal shardKey, String sql, StatementBinder binder) throws Exception {
+        return RETRY.call(null, () -> {
+            if (sessions == null) {
+                try (Connection conn = openConnectionByShardKey(gdsPool, shardKey); PreparedStatement ps = conn.prepareStatement(sql)) {
+                    conn.setAutoCommit(false);
+                    return executeStatement(conn, ps, binder);
                 }
-                throw e;
             }
+            int[] rows = new int[1];
+            sessions.execute(shardKey, session -> rows[0] = executeStatement(session.connection(), session.prepare(sql), binder));
+            return rows[0];
+        }, oraObserver(gdsPool, phase, shardKey, null));
+    }
+
+    private static int executeStatement(Connection conn, PreparedStatement ps, StatementBinder binder) throws Exception {
+        binder.bind(ps);
+
+        long startNs = System.nanoTime();
+        if (ps.execute()) {
+            int rows = 0;
+            try (ResultSet rs = ps.getResultSet()) {
+                while (rs.next()) rows++;
+            }
+            RunMetrics.EXECUTE.recordSince(startNs);
+            return rows;
         }
+        int rows = ps.getUpdateCount();
+        RunMetrics.EXECUTE.recordSince(startNs);
+
+        startNs = System.nanoTime();
+        conn.commit();
+        RunMetrics.COMMIT.recordSince(startNs);
+        RunMetrics.rowsWritten(rows);
+        return rows;
+    }
 
-        throw new IllegalStateException("unreachable");
+    // Sticky sessions and batched writers keep a connection per worker; see LoadLoop.poolSize.
+    static boolean customerInsertsHoldConnections() {
+        return StickySessions.enabled() || Integer.parseInt(optionalEnv("ROWS_PER_EXECUTE", "1")) != 1 || Integer.parseInt(optionalEnv("EXECUTES_PER_COMMIT", "1")) != 1;
     }
 
-    static void runForDuration(int workerThreads, long durationSeconds, Runnable task) throws Exception {
-        long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
-        ExecutorService executor = Executors.newFixedThreadPool(workerThreads);
+    static void runCustomerInserts(String mode, Logger logger, int workerThreads, long durationSeconds, PoolDataSource gdsPool, IdSource ids) throws Exception {
+        int rowsPerExecute = Integer.parseInt(optionalEnv("ROWS_PER_EXECUTE", "1"));
+        int executesPerCommit = Integer.parseInt(optionalEnv("EXECUTES_PER_COMMIT", "1"));
+
+        if (rowsPerExecute == 1 && executesPerCommit == 1 && StickySessions.enabled()) {
+            ShardRouter router = ShardRouter.forPool(gdsPool);
+            StickySessions sessions = new StickySessions(gdsPool, router);
 
-        for (int i = 0; i < workerThreads; i++) {
-            executor.submit(() -> {
-                while (System.nanoTime() < deadlineNs) {
-                    task.run();
+            runForDuration(mode, workerThreads, durationSeconds, () -> {
+                try {
+                    insertCustomerById(sessions, gdsPool, BigDecimal.valueOf(ids.nextId()));
+                } catch (Exception e) {
+                    recordFailure(logger, mode, e);
+                }
+            }, sessions::closeCurrentThread);
+
+            sessions.logStats(mode);
+            router.logStats(mode);
+            return;
+        }
+
+        if (rowsPerExecute == 1 && executesPerCommit == 1) {
+            runForDuration(mode, workerThreads, durationSeconds, () -> {
+                try {
+                    insertCustomerById(gdsPool, BigDecimal.valueOf(ids.nextId()));
+                } catch (Exception e) {
+                    recordFailure(logger, mode, e);
                 }
             });
+            return;
         }
 
-        executor.shutdown();
-        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        LOGGER.log(Level.INFO, "BATCHED_INSERTS mode={0} rows_per_execute={1} executes_per_commit={2}", new Object[]{mode, rowsPerExecute, executesPerCommit});
+
+        ShardRouter router = ShardRouter.forPool(gdsPool);
+        ThreadLocal<BatchedCustomerWriter> writers = ThreadLocal.withInitial(() -> new BatchedCustomerWriter(gdsPool, router, rowsPerExecute, executesPerCommit));
+
+        runForDuration(mode, workerThreads, durationSeconds, () -> {
+            try {
+                writers.get().add(ids.nextId());
+            } catch (Exception e) {
+                recordFailure(logger, mode, e);
+            }
+        }, () -> {
+            try {
+                writers.get().close();
+            } catch (Exception e) {
+                recordFailure(logger, mode, e);
+            }
+        });
+
+        router.logStats(mode);
     }
 
-    static void logStopAndExit(Logger logger, String mode, Throwable error) {
-        logger.log(Level.SEVERE, "STOP mode=" + mode, error);
-        System.exit(1);
+    // End-of-run reporting shared by the generators: direct pool usage, then the written-key read-back phase.
+    static void afterRun(String mode, PoolDataSource gdsPool) throws Exception {
+        DirectShardPools direct = DIRECT_POOLS.get(gdsPool);
+        if (direct != null) direct.logStats(mode);
+        EventLog.logStats(mode);
+        verifyWrittenKeys(mode, gdsPool);
+    }
+
+    // Read-back phase over the keys this run committed; see WrittenKeyVerifier for the switches.
+    private static void verifyWrittenKeys(String mode, PoolDataSource gdsPool) throws Exception {
+        if (KEYS == null) return;
+        KEYS.logStats(mode);
+        WrittenKeyVerifier.runIfConfigured(mode, KEYS, key -> {
+            BigDecimal customerId = BigDecimal.valueOf(key);
+            try (Connection conn = openConnectionByShardKey(gdsPool, customerId); PreparedStatement ps = conn.prepareStatement(SQL_VERIFY_CUSTOMER)) {
+                ps.setBigDecimal(1, customerId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return new WrittenKeyVerifier.Result(rs.getString(1), rs.getLong(2) > 0);
+                }
+            }
+        });
+    }
+
+    static void runForDuration(String mode, int workerThreads, long durationSeconds, Runnable task) throws Exception {
+        runForDuration(mode, workerThreads, durationSeconds, task, () -> {
+        });
+    }
+
+    static void runForDuration(String mode, int workerThreads, long durationSeconds, Runnable task, Runnable workerExit) throws Exception {
+        LoadLoop.run(mode, workerThreads, durationSeconds, task, workerExit);
+    }
+
+    static void recordFailure(Logger logger, String mode, Throwable error) {
+        RunErrors.record(logger, mode, error);
     }
 
     static void logFatalAndExit(Logger logger, String mode, Throwable error) {
@@ -158,24 +349,57 @@ final class DataGeneratorUtils {
         System.exit(1);
     }
 
-    private static OracleShardingKey buildNumberShardingKey(PoolDataSource pool, BigDecimal shardKey) throws Exception {
+    static OracleShardingKey buildNumberShardingKey(PoolDataSource pool, BigDecimal shardKey) throws Exception {
         return pool.createShardingKeyBuilder().subkey(shardKey, OracleType.NUMBER).build();
     }
 
-    private static void callInsertCustomerBatch(PoolDataSource gdsPool, BigDecimal routeKey, BigDecimal[] customerIds) throws Exception {
+    private static void callInsertCustomerBatch(PoolDataSource gdsPool, String sql, BigDecimal routeKey, long[] customerIds, int count, boolean fullRows) throws Exception {
 
-        try (Connection conn = openConnectionByShardKey(gdsPool, routeKey); CallableStatement cs = conn.prepareCall(SQL_CALL_INSERT_CUSTOMER_BATCH)) {
+        try (Connection conn = openConnectionByShardKey(gdsPool, routeKey); CallableStatement cs = conn.prepareCall(sql)) {
 
             conn.setAutoCommit(false);
+            executeInsertCustomerBatch(conn, cs, customerIds, count, fullRows);
+        }
+    }
 
+    private static void executeInsertCustomerBatch(Connection conn, CallableStatement cs, long[] customerIds, int count, boolean fullRows) throws Exception {
+        if (fullRows) {
+            CustomerBulkAssembler.bind(conn, cs, customerIds, count);
+        } else {
+            long startNs = System.nanoTime();
             OracleConnection oracleConn = conn.unwrap(OracleConnection.class);
-            Array oracleArray = oracleConn.createOracleArray(ORACLE_TYPE_CUST_ID_TABLE, customerIds);
-
+            Array oracleArray = oracleConn.createOracleArray(ORACLE_TYPE_CUST_ID_TABLE, exactIds(customerIds, count));
             cs.setArray(1, oracleArray);
-            cs.execute();
-
-            conn.commit();
+            RunMetrics.ASSEMBLY.recordSince(startNs);
         }
+
+        long startNs = System.nanoTime();
+        cs.execute();
+        RunMetrics.EXECUTE.recordSince(startNs);
+
+        startNs = System.nanoTime();
+        conn.commit();
+        RunMetrics.COMMIT.recordSince(startNs);
+        RunMetrics.rowsWritten(count);
+    }
+
+    // The driver binds a primitive array by its length, so only a short tail batch is copied.
+    static long[] exactIds(long[] customerIds, int count) {
+        return count == customerIds.length ? customerIds : Arrays.copyOf(customerIds, count);
+    }
+
+    static RetryPolicy.Observer oraObserver(PoolDataSource pool, String phase, Object key, IntConsumer oraSignal) {
+        return (kind, e, attempt) -> {
+            if (isOra45582(e)) {
+                recordOra45582(pool, phase, key, e);
+                if (oraSignal != null) oraSignal.accept(45582);
+            } else if (isOra05086(e)) {
+                recordOra05086(phase, key, e);
+                if (oraSignal != null) oraSignal.accept(5086);
+            } else if (kind == SqlErrorClassifier.Kind.ROUTING_STALE) {
+                refreshRoutingWithCooldown(pool, phase);
+            }
+        };
     }
 
     private static boolean isOra45582(SQLException e) {
@@ -192,13 +416,13 @@ final class DataGeneratorUtils {
 
     private static void recordOra45582(PoolDataSource pool, String phase, Object key, SQLException cause) {
         long total = ORA_45582_TOTAL.incrementAndGet();
-        LOGGER.log(Level.WARNING, "ORA45582 total={0} phase={1} pool={2} key={3} msg={4}", new Object[]{total, phase, safePoolName(pool), String.valueOf(key), cause.getMessage()});
+        ORA45582.emit(total, phase, safePoolName(pool), key, cause.getMessage());
         refreshRoutingWithCooldown(pool, phase);
     }
 
     private static void recordOra05086(String phase, Object key, SQLException cause) {
         long total = ORA_05086_TOTAL.incrementAndGet();
-        LOGGER.log(Level.WARNING, "ORA05086 total={0} phase={1} key={2} msg={3}", new Object[]{total, phase, String.valueOf(key), cause.getMessage()});
+        ORA05086.emit(total, phase, key, cause.getMessage());
     }
 
     private static void refreshRoutingWithCooldown(PoolDataSource pool, String phase) {
@@ -211,6 +435,9 @@ final class DataGeneratorUtils {
         }
 
         if (!LAST_ROUTING_REFRESH_MS.compareAndSet(last, now)) return;
+        ROUTING_REFRESHES.incrementAndGet();
+
+        for (Runnable listener : ROUTING_INVALIDATION_LISTENERS) listener.run();
 
         try {
             UniversalConnectionPoolManager mgr = UniversalConnectionPoolManagerImpl.getUniversalConnectionPoolManager();
@@ -228,4 +455,9 @@ final class DataGeneratorUtils {
             return "UNKNOWN_POOL";
         }
     }
+
+    @FunctionalInterface
+    interface StatementBinder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
 }
@@ -0,0 +1,165 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+import oracle.ucp.jdbc.PoolDataSourceFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// One plain UCP pool per shard, reached through the local routing map instead of the GSM-aware sharding-key borrow.
+final class DirectShardPools {
+
+    private static final Logger LOGGER = Logger.getLogger(DirectShardPools.class.getName());
+    private static final String SQL_ENDPOINT = "SELECT SYS_CONTEXT('USERENV', 'SERVER_HOST'), SYS_CONTEXT('USERENV', 'SERVICE_NAME') FROM DUAL";
+    private static final Endpoint UNAVAILABLE = new Endpoint(null);
+
+    private final PoolDataSource gdsPool;
+    private final ShardRouter router;
+    private final int minPerShard;
+    private final int maxPerShard;
+    private final long suspendNs;
+
+    private volatile Endpoint[] endpoints = new Endpoint[0];
+    private volatile long suspendedUntilNs = System.nanoTime();
+
+    private final LongAdder direct = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    private DirectShardPools(PoolDataSource gdsPool, ShardRouter router, int minPerShard, int maxPerShard, long suspendNs) {
+        this.gdsPool = gdsPool;
+        this.router = router;
+        this.minPerShard = minPerShard;
+        this.maxPerShard = maxPerShard;
+        this.suspendNs = suspendNs;
+    }
+
+    static boolean enabled() {
+        return Boolean.parseBoolean(DataGeneratorUtils.optionalEnv("DIRECT_SHARD_POOLS", "false"));
+    }
+
+    static DirectShardPools create(PoolDataSource gdsPool, ShardRouter router, int workerThreads) {
+        int max = Integer.parseInt(DataGeneratorUtils.optionalEnv("DIRECT_POOL_MAX", String.valueOf(workerThreads)));
+        int min = Math.min(max, Integer.parseInt(DataGeneratorUtils.optionalEnv("DIRECT_POOL_MIN", "1")));
+        long suspendMs = Long.parseLong(DataGeneratorUtils.optionalEnv("DIRECT_POOL_SUSPEND_MS", "30000"));
+
+        DirectShardPools pools = new DirectShardPools(gdsPool, router, min, max, TimeUnit.MILLISECONDS.toNanos(suspendMs));
+        DataGeneratorUtils.addRoutingInvalidationListener(pools::suspend);
+        MetricsRegistry.counter("direct_borrows_total", "Connections borrowed per path when DIRECT_SHARD_POOLS is on", pools.direct::sum, "path", "direct");
+        MetricsRegistry.counter("direct_borrows_total", "Connections borrowed per path when DIRECT_SHARD_POOLS is on", pools.fallbacks::sum, "path", "gds_fallback");
+        LOGGER.log(Level.INFO, "DIRECT_POOLS pool_min={0} pool_max={1} suspend_ms={2}", new Object[]{min, max, suspendMs});
+        return pools;
+    }
+
+    // Null when the caller should borrow through GDS: routing is suspended or the shard has no usable direct pool.
+    Connection borrow(BigDecimal shardKey) throws Exception {
+        if (System.nanoTime() - suspendedUntilNs < 0) {
+            fallbacks.increment();
+            return null;
+        }
+
+        long startNs = System.nanoTime();
+        int shardIndex = router.resolveShardIndex(shardKey);
+        RunMetrics.SHARDING_KEY.recordSince(startNs);
+
+        Endpoint[] current = endpoints;
+        Endpoint endpoint = shardIndex < current.length ? current[shardIndex] : null;
+        if (endpoint == null) endpoint = open(shardIndex, shardKey);
+        if (endpoint.pool == null) {
+            fallbacks.increment();
+            return null;
+        }
+
+        startNs = System.nanoTime();
+        Connection conn = endpoint.pool.getConnection();
+        RunMetrics.BORROW.recordSince(startNs);
+        direct.increment();
+        // Only now can ORA-14400 mean the chunk moved off this shard; see SqlErrorClassifier.
+        SqlErrorClassifier.directBorrow(true);
+        return conn;
+    }
+
+    void logStats(String mode) {
+        int open = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint != null && endpoint.pool != null) open++;
+        }
+        LOGGER.log(Level.INFO, "DIRECT_POOLS_STATS mode={0} shard_pools={1} direct={2} gds_fallback={3}", new Object[]{mode, open, direct.sum(), fallbacks.sum()});
+    }
+
+    private void suspend() {
+        suspendedUntilNs = System.nanoTime() + suspendNs;
+        LOGGER.log(Level.WARNING, "DIRECT_POOLS_SUSPENDED for_ms={0}", TimeUnit.NANOSECONDS.toMillis(suspendNs));
+    }
+
+    private synchronized Endpoint open(int shardIndex, BigDecimal shardKey) {
+        Endpoint[] current = endpoints;
+        if (shardIndex < current.length && current[shardIndex] != null) return current[shardIndex];
+
+        String shardName = router.shardName(shardIndex);
+        Endpoint endpoint;
+        try {
+            endpoint = new Endpoint(createPool(shardIndex, shardName, shardKey));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "DIRECT_POOL_FAIL shard={0} fallback=gds msg={1}", new Object[]{shardName, e.getMessage()});
+            endpoint = UNAVAILABLE;
+        }
+
+        Endpoint[] grown = current.length > shardIndex ? current.clone() : Arrays.copyOf(current, shardIndex + 1);
+        grown[shardIndex] = endpoint;
+        endpoints = grown;
+        return endpoint;
+    }
+
+    private PoolDataSource createPool(int shardIndex, String shardName, BigDecimal shardKey) throws Exception {
+        String url = DataGeneratorUtils.optionalEnv("SHARD_URL_" + shardName.toUpperCase(), null);
+        if (url == null) url = discoverUrl(shardIndex, shardKey);
+
+        PoolDataSource pool = PoolDataSourceFactory.getPoolDataSource();
+        pool.setConnectionFactoryClassName("oracle.jdbc.pool.OracleDataSource");
+        pool.setConnectionPoolName("UCP_DIRECT_" + shardName);
+        pool.setURL(url);
+        pool.setUser(DataGeneratorUtils.requireEnv("GDD_USERNAME"));
+        pool.setPassword(DataGeneratorUtils.requireEnv("GDD_PASSWORD"));
+        pool.setInitialPoolSize(minPerShard);
+        pool.setMinPoolSize(minPerShard);
+        pool.setMaxPoolSize(maxPerShard);
+        pool.setMaxStatements(Integer.parseInt(DataGeneratorUtils.optionalEnv("STATEMENT_CACHE_SIZE", "16")));
+        pool.getConnection().close();
+        PoolMetrics.register(pool);
+
+        LOGGER.log(Level.INFO, "DIRECT_POOL_OK shard={0} url={1} max={2}", new Object[]{shardName, url, maxPerShard});
+        return pool;
+    }
+
+    // Global services also register with each shard's local listener, so host plus service name reaches the shard directly.
+    // The landed shard is identified the way the router identifies shards, so the check holds whichever source named it.
+    private String discoverUrl(int shardIndex, BigDecimal shardKey) throws Exception {
+        try (Connection conn = DataGeneratorUtils.openRoutedConnection(gdsPool, shardKey)) {
+            String landed;
+            try (PreparedStatement ps = conn.prepareStatement(DataGeneratorUtils.SQL_SHARD_NAME); ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                landed = rs.getString(1);
+            }
+            if (!router.isShard(shardIndex, landed)) throw new IllegalStateException("key moved to " + landed + " during discovery");
+            try (PreparedStatement ps = conn.prepareStatement(SQL_ENDPOINT); ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return "jdbc:oracle:thin:@//" + rs.getString(1) + ":" + DataGeneratorUtils.optionalEnv("SHARD_LISTENER_PORT", "1521") + "/" + rs.getString(2);
+            }
+        }
+    }
+
+    private static final class Endpoint {
+        final PoolDataSource pool;
+
+        Endpoint(PoolDataSource pool) {
+            this.pool = pool;
+        }
+    }
+}
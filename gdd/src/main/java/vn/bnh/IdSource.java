@@ -0,0 +1,7 @@
+package vn.bnh;
+
+@FunctionalInterface
+interface IdSource {
+
+    long nextId() throws Exception;
+}
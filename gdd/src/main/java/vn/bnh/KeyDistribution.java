@@ -0,0 +1,124 @@
+package vn.bnh;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Picks positions in [0, size) of an existing key space; rank order is scrambled so hot keys spread across chunks.
+final class KeyDistribution {
+
+    enum Kind {
+        UNIFORM, ZIPFIAN, HOTSET;
+
+        static Kind parse(String value) {
+            return Kind.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private final Kind kind;
+    private final long size;
+    private final double exponent;
+    private final long hotSize;
+    private final double hotProbability;
+
+    // Rejection-inversion constants (Hörmann and Derflinger), so setup stays O(1) for any key range.
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double squeeze;
+
+    private KeyDistribution(Kind kind, long size, double exponent, double hotFraction, double hotProbability) {
+        if (size <= 0) throw new IllegalArgumentException("key space is empty");
+        if (exponent <= 0) throw new IllegalArgumentException("zipf exponent must be positive");
+        if (hotFraction <= 0 || hotFraction > 1 || hotProbability < 0 || hotProbability > 1) throw new IllegalArgumentException("hot set fraction/probability out of range");
+        this.kind = kind;
+        this.size = size;
+        this.exponent = exponent;
+        this.hotSize = Math.max(1, (long) (size * hotFraction));
+        this.hotProbability = hotProbability;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(size + 0.5);
+        this.squeeze = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    static KeyDistribution uniform(long size) {
+        return new KeyDistribution(Kind.UNIFORM, size, 1, 1, 0);
+    }
+
+    static KeyDistribution zipfian(long size, double exponent) {
+        return new KeyDistribution(Kind.ZIPFIAN, size, exponent, 1, 0);
+    }
+
+    static KeyDistribution hotSet(long size, double hotFraction, double hotProbability) {
+        return new KeyDistribution(Kind.HOTSET, size, 1, hotFraction, hotProbability);
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    long nextIndex() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (kind) {
+            case ZIPFIAN:
+                return scramble(nextZipfRank(random) - 1);
+            case HOTSET:
+                if (random.nextDouble() < hotProbability || hotSize == size) return scramble(random.nextLong(hotSize));
+                return scramble(hotSize + random.nextLong(size - hotSize));
+            default:
+                return random.nextLong(size);
+        }
+    }
+
+    String describe() {
+        switch (kind) {
+            case ZIPFIAN:
+                return "zipfian(s=" + exponent + ")";
+            case HOTSET:
+                return "hotset(keys=" + hotSize + " p=" + hotProbability + ")";
+            default:
+                return "uniform";
+        }
+    }
+
+    private long nextZipfRank(ThreadLocalRandom random) {
+        for (; ; ) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            long k = Math.max(1, Math.min(size, (long) (x + 0.5)));
+            if (k - x <= squeeze || u >= hIntegral(k + 0.5) - h(k)) return k;
+        }
+    }
+
+    // Bijective mix of the rank within [0, size): multiply by an odd constant modulo the next power of two, then cycle-walk.
+    private long scramble(long rank) {
+        if (size == 1) return 0;
+        long mask = Long.highestOneBit(size - 1) * 2 - 1;
+        long v = rank;
+        do {
+            v = (v * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L) & mask;
+            v ^= v >>> 7;
+            v &= mask;
+        } while (v >= size);
+        return v;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1, x * (1 - exponent));
+        return Math.exp(helper1(t) * x);
+    }
+
+    private static double helper1(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    private static double helper2(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
@@ -1,5 +1,7 @@
 package vn.bnh;
 
+import java.util.Arrays;
+
 public final class Main {
 
     private Main() {
@@ -7,7 +9,7 @@ public final class Main {
 
     public static void main(String[] args) {
         if (args.length == 0) {
-            throw new IllegalArgumentException("Usage: --sequence | --snowflake | --procedure | --query \"...\" --sharding-key \"...\"");
+            throw new IllegalArgumentException("Usage: --sequence | --snowflake | --snowflake-async | --procedure | --procedure-bulk | --scenario <file> | --query \"...\" (--sharding-key \"...\" | --all-shards [--order-by col | --combine key,count,sum,min,max]) [--output file|- --format csv|jsonl --fetch-size n] | --merge-metrics <log>...");
         }
 
         switch (args[0]) {
@@ -17,9 +19,22 @@ public final class Main {
             case "--snowflake":
                 SnowflakeCustomerGenerator.run();
                 return;
+            case "--snowflake-async":
+                AsyncCustomerGenerator.run();
+                return;
             case "--procedure":
                 ProcedureBatchCustomerGenerator.run();
                 return;
+            case "--procedure-bulk":
+                ProcedureBatchCustomerGenerator.run(true);
+                return;
+            case "--scenario":
+                if (args.length < 2) throw new IllegalArgumentException("Usage: --scenario <file>");
+                ScenarioRunner.run(args[1]);
+                return;
+            case "--merge-metrics":
+                mergeMetrics(args);
+                return;
             default:
                 break;
         }
@@ -30,4 +45,12 @@ public final class Main {
             throw new RuntimeException(e);
         }
     }
+
+    private static void mergeMetrics(String[] args) {
+        try {
+            RunMetrics.mergeSummaries(Arrays.copyOfRange(args, 1, args.length));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -2,15 +2,14 @@ package vn.bnh;
 
 import oracle.ucp.jdbc.PoolDataSource;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,11 +17,19 @@ public final class ProcedureBatchCustomerGenerator {
 
     private static final Logger LOGGER = Logger.getLogger(ProcedureBatchCustomerGenerator.class.getName());
     private static final SnowflakeGenerator ID_GENERATOR = new SnowflakeGenerator();
+    private static final EventLog.Event BATCH_OK = EventLog.event("BATCH_OK", Level.INFO).text("shard").number("size");
+
+    private static volatile CircuitBreaker[] breakers = new CircuitBreaker[0];
 
     private ProcedureBatchCustomerGenerator() {
     }
 
     public static void run() {
+        run(false);
+    }
+
+    public static void run(boolean fullRows) {
+        String mode = fullRows ? "procedure_bulk" : "procedure_batch";
         ExecutorService shardExecutor = null;
 
         try {
@@ -31,65 +38,183 @@ public final class ProcedureBatchCustomerGenerator {
             int batchSize = Integer.parseInt(DataGeneratorUtils.requireEnv("BATCH_SIZE"));
             int shardParallelism = Integer.parseInt(DataGeneratorUtils.requireEnv("SHARDS"));
 
-            LOGGER.log(Level.INFO, "START mode=procedure_batch threads={0} duration_s={1} batch_size={2}", new Object[]{workerThreads, durationSeconds, batchSize});
-
-            PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_PROC_URL", workerThreads);
+            LOGGER.log(Level.INFO, "START mode={0} threads={1} duration_s={2} batch_size={3}", new Object[]{mode, workerThreads, durationSeconds, batchSize});
+
+            if (Boolean.parseBoolean(DataGeneratorUtils.optionalEnv("PIPELINE", "false"))) {
+                runPipelined(mode + "_pipeline", workerThreads, durationSeconds, batchSize, fullRows);
+                LOGGER.log(Level.INFO, "END mode={0}", mode);
+                return;
+            }
+            // Adaptive concurrency lives on the pipeline's writer lanes; the direct and bucketed paths have none.
+            if (Boolean.parseBoolean(DataGeneratorUtils.optionalEnv("ADAPTIVE", "false"))) {
+                LOGGER.log(Level.WARNING, "ADAPTIVE_IGNORED mode={0} reason=requires_PIPELINE", mode);
+            }
+
+            boolean sticky = StickySessions.enabled();
+            PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_PROC_URL", sticky ? Math.max(LoadLoop.concurrency(workerThreads), shardParallelism) : LoadLoop.concurrency(workerThreads));
+            ShardRouter router = ShardRouter.forPool(gdsPool);
+            StickySessions sessions = sticky ? new StickySessions(gdsPool, router) : null;
             shardExecutor = Executors.newFixedThreadPool(Math.max(1, shardParallelism));
 
+            if (ShardBucketedIdSource.enabled()) {
+                runBucketed(mode + "_bucketed", workerThreads, durationSeconds, batchSize, fullRows, gdsPool, router, sessions);
+                LOGGER.log(Level.INFO, "END mode={0}", mode);
+                return;
+            }
+
             ExecutorService finalShardExecutor = shardExecutor;
+            ThreadLocal<WorkerBatch> batches = ThreadLocal.withInitial(() -> new WorkerBatch(router, batchSize));
 
-            DataGeneratorUtils.runForDuration(workerThreads, durationSeconds, () -> {
+            DataGeneratorUtils.runForDuration(mode, workerThreads, durationSeconds, () -> {
                 try {
-                    List<BigDecimal> batchIds = new ArrayList<>(batchSize);
-                    for (int i = 0; i < batchSize; i++) {
-                        batchIds.add(BigDecimal.valueOf(ID_GENERATOR.nextId()));
-                    }
-
-                    Map<String, List<BigDecimal>> shardToIds = new LinkedHashMap<>();
-                    for (BigDecimal id : batchIds) {
-                        String shardName = DataGeneratorUtils.resolveShardNameByShardKey(gdsPool, id);
-                        shardToIds.computeIfAbsent(shardName, k -> new ArrayList<>()).add(id);
-                    }
-
-                    if (shardToIds.isEmpty()) return;
-
-                    List<Future<?>> futures = new ArrayList<>(shardToIds.size());
-
-                    for (Map.Entry<String, List<BigDecimal>> entry : shardToIds.entrySet()) {
-                        String shardName = entry.getKey();
-                        List<BigDecimal> ids = entry.getValue();
-
-                        BigDecimal routeKey = ids.get(0);
-                        BigDecimal[] customerIds = ids.toArray(new BigDecimal[0]);
-
-                        futures.add(finalShardExecutor.submit(() -> {
-                            try {
-                                DataGeneratorUtils.callInsertCustomerBatchWithRetry(gdsPool, routeKey, customerIds);
-                                LOGGER.log(Level.INFO, "BATCH_OK shard={0} size={1}", new Object[]{shardName, customerIds.length});
-                            } catch (Exception e) {
-                                throw new RuntimeException(e);
-                            }
+                    WorkerBatch batch = batches.get();
+                    ID_GENERATOR.nextIds(batch.ids, batchSize);
+                    batch.grouper.group(batch.ids, batchSize);
+
+                    ShardBatchGrouper grouper = batch.grouper;
+                    int groups = grouper.groups();
+                    // The last group runs on the worker itself unless sessions are sticky: a worker holding its own
+                    // session per shard on top of the executor threads' would outgrow the pool sized above.
+                    int inline = sessions == null && groups > 0 ? 1 : 0;
+                    for (int g = 0; g < groups - inline; g++) {
+                        int group = g;
+                        batch.futures.add(finalShardExecutor.submit(() -> {
+                            insertGroup(gdsPool, sessions, router, grouper, group, fullRows);
+                            return null;
                         }));
                     }
+                    if (inline == 1) {
+                        try {
+                            insertGroup(gdsPool, sessions, router, grouper, groups - 1, fullRows);
+                        } catch (Exception e) {
+                            DataGeneratorUtils.recordFailure(LOGGER, mode, e);
+                        }
+                    }
 
-                    for (Future<?> f : futures) {
+                    for (Future<?> f : batch.futures) {
                         try {
                             f.get();
                         } catch (ExecutionException ex) {
                             Throwable root = ex.getCause() == null ? ex : ex.getCause();
-                            DataGeneratorUtils.logStopAndExit(LOGGER, "procedure_batch", root);
+                            DataGeneratorUtils.recordFailure(LOGGER, mode, root);
                         }
                     }
+                    batch.futures.clear();
                 } catch (Exception e) {
-                    DataGeneratorUtils.logStopAndExit(LOGGER, "procedure_batch", e);
+                    DataGeneratorUtils.recordFailure(LOGGER, mode, e);
                 }
             });
 
-            LOGGER.log(Level.INFO, "END mode=procedure_batch");
+            if (sessions != null) {
+                sessions.logStats(mode);
+                sessions.closeAll();
+            }
+            router.logStats(mode);
+            DataGeneratorUtils.afterRun(mode, gdsPool);
+            LOGGER.log(Level.INFO, "END mode={0}", mode);
         } catch (Exception e) {
-            DataGeneratorUtils.logFatalAndExit(LOGGER, "procedure_batch", e);
+            DataGeneratorUtils.logFatalAndExit(LOGGER, mode, e);
         } finally {
             if (shardExecutor != null) shardExecutor.shutdownNow();
         }
     }
+
+    private static void insertGroup(PoolDataSource gdsPool, StickySessions sessions, ShardRouter router, ShardBatchGrouper grouper, int group, boolean fullRows) throws Exception {
+        int shardIndex = grouper.shardIndex(group);
+        int count = grouper.count(group);
+        DataGeneratorUtils.callInsertCustomerBatchWithRetry(gdsPool, sessions, breaker(router, shardIndex), grouper.ids(group), count, fullRows, null);
+        BATCH_OK.emit(count, router.shardName(shardIndex));
+    }
+
+    // Indexed cache over CircuitBreaker.forName so the hot loop does not build "shard:<name>" per call.
+    private static CircuitBreaker breaker(ShardRouter router, int shardIndex) {
+        CircuitBreaker[] cached = breakers;
+        if (shardIndex < cached.length && cached[shardIndex] != null) return cached[shardIndex];
+        synchronized (ProcedureBatchCustomerGenerator.class) {
+            cached = breakers.length > shardIndex ? breakers.clone() : Arrays.copyOf(breakers, shardIndex + 1);
+            cached[shardIndex] = CircuitBreaker.forName("shard:" + router.shardName(shardIndex));
+            breakers = cached;
+            return cached[shardIndex];
+        }
+    }
+
+    // Each operation takes a full batch that already lands on one shard, so it is a single procedure call.
+    private static void runBucketed(String mode, int workerThreads, long durationSeconds, int batchSize, boolean fullRows, PoolDataSource gdsPool, ShardRouter router, StickySessions sessions) throws Exception {
+        int bucketCapacity = Integer.parseInt(DataGeneratorUtils.optionalEnv("ID_BUCKET_CAPACITY", String.valueOf(batchSize * 2)));
+        ShardBucketedIdSource ids = new ShardBucketedIdSource(ID_GENERATOR, router, bucketCapacity);
+        ThreadLocal<long[]> buffers = ThreadLocal.withInitial(() -> new long[batchSize]);
+
+        LOGGER.log(Level.INFO, "ID_BUCKETS_ON mode={0} bucket_capacity={1}", new Object[]{mode, bucketCapacity});
+
+        DataGeneratorUtils.runForDuration(mode, workerThreads, durationSeconds, () -> {
+            try {
+                long[] buffer = buffers.get();
+                int shardIndex = ids.next(buffer, batchSize);
+                DataGeneratorUtils.callInsertCustomerBatchWithRetry(gdsPool, sessions, breaker(router, shardIndex), buffer, batchSize, fullRows, null);
+                BATCH_OK.emit(batchSize, router.shardName(shardIndex));
+            } catch (Exception e) {
+                DataGeneratorUtils.recordFailure(LOGGER, mode, e);
+            }
+        }, sessions == null ? () -> {
+        } : sessions::closeCurrentThread);
+
+        ids.logStats(mode);
+        if (sessions != null) {
+            sessions.logStats(mode);
+            sessions.closeAll();
+        }
+        router.logStats(mode);
+        DataGeneratorUtils.afterRun(mode, gdsPool);
+    }
+
+    private static void runPipelined(String mode, int workerThreads, long durationSeconds, int batchSize, boolean fullRows) throws Exception {
+        int writersPerShard = Integer.parseInt(DataGeneratorUtils.optionalEnv("WRITERS_PER_SHARD", "1"));
+        long lingerMs = Long.parseLong(DataGeneratorUtils.optionalEnv("PIPELINE_LINGER_MS", "50"));
+        long reportIntervalSeconds = Long.parseLong(DataGeneratorUtils.optionalEnv("METRICS_INTERVAL", "10"));
+
+        boolean adaptive = Boolean.parseBoolean(DataGeneratorUtils.optionalEnv("ADAPTIVE", "false"));
+        int minBatch = Integer.parseInt(DataGeneratorUtils.optionalEnv("ADAPT_MIN_BATCH", String.valueOf(Math.max(1, batchSize / 8))));
+        int maxBatch = adaptive ? Integer.parseInt(DataGeneratorUtils.optionalEnv("ADAPT_MAX_BATCH", String.valueOf(batchSize * 4))) : batchSize;
+        long targetLatencyMs = Long.parseLong(DataGeneratorUtils.optionalEnv("ADAPT_TARGET_LATENCY_MS", "200"));
+        long adaptIntervalMs = Long.parseLong(DataGeneratorUtils.optionalEnv("ADAPT_INTERVAL_MS", "1000"));
+        int queueCapacity = Integer.parseInt(DataGeneratorUtils.optionalEnv("PIPELINE_QUEUE_CAPACITY", String.valueOf(maxBatch * 4)));
+        // The controller can only open as many slots as there are writer lanes, so an adaptive run starts lanes up to its ceiling.
+        int maxInFlight = adaptive ? Integer.parseInt(DataGeneratorUtils.optionalEnv("ADAPT_MAX_IN_FLIGHT", String.valueOf(Math.max(4, writersPerShard)))) : writersPerShard;
+        int writerLanes = Math.max(writersPerShard, maxInFlight);
+
+        LOGGER.log(Level.INFO, "PIPELINE writers_per_shard={0} queue_capacity={1} linger_ms={2} adaptive={3} max_in_flight={4}", new Object[]{writerLanes, queueCapacity, lingerMs, adaptive, maxInFlight});
+
+        PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_PROC_URL", Math.max(LoadLoop.concurrency(workerThreads), writerLanes));
+        ShardRouter router = ShardRouter.forPool(gdsPool);
+        StickySessions sessions = StickySessions.enabled() ? new StickySessions(gdsPool, router) : null;
+
+        Function<String, AdaptiveShardController> controllers = adaptive ? shardName -> new AdaptiveShardController(shardName, batchSize, minBatch, maxBatch, maxInFlight, targetLatencyMs, adaptIntervalMs) : null;
+
+        try (ShardWriterPipeline pipeline = new ShardWriterPipeline(mode, gdsPool, router, sessions, fullRows, maxBatch, queueCapacity, lingerMs, writerLanes, reportIntervalSeconds, controllers)) {
+            DataGeneratorUtils.runForDuration(mode, workerThreads, durationSeconds, () -> {
+                try {
+                    for (int i = 0; i < batchSize; i++) {
+                        pipeline.submit(ID_GENERATOR.nextId());
+                    }
+                } catch (Exception e) {
+                    DataGeneratorUtils.recordFailure(LOGGER, mode, e);
+                }
+            });
+        }
+
+        if (sessions != null) sessions.logStats(mode);
+        router.logStats(mode);
+        DataGeneratorUtils.afterRun(mode, gdsPool);
+    }
+
+    private static final class WorkerBatch {
+        final long[] ids;
+        final ShardBatchGrouper grouper;
+        final List<Future<?>> futures = new ArrayList<>();
+
+        WorkerBatch(ShardRouter router, int batchSize) {
+            this.ids = new long[batchSize];
+            this.grouper = new ShardBatchGrouper(router::resolveShardIndex, batchSize);
+        }
+    }
 }
@@ -0,0 +1,226 @@
+package vn.bnh;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+final class RowStreamWriter implements AutoCloseable {
+
+    enum Format {
+        CSV, JSONL;
+
+        static Format parse(String value) {
+            switch (value.toLowerCase()) {
+                case "csv":
+                    return CSV;
+                case "jsonl":
+                    return JSONL;
+                default:
+                    throw new IllegalArgumentException("Unknown --format: " + value);
+            }
+        }
+    }
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final Format format;
+    private final String[] labels;
+    private final boolean[] numeric;
+
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+
+    private long rows;
+    private long bytes;
+
+    RowStreamWriter(WritableByteChannel channel, Format format, ResultSetMetaData meta) throws SQLException, IOException {
+        this(channel, format, labelsOf(meta), numericOf(meta));
+    }
+
+    RowStreamWriter(WritableByteChannel channel, Format format, String[] labels, boolean[] numeric) throws IOException {
+        this.channel = channel;
+        this.format = format;
+        this.labels = labels;
+        this.numeric = numeric;
+
+        if (format == Format.CSV) {
+            for (int c = 0; c < labels.length; c++) {
+                if (c > 0) line.append(',');
+                appendCsv(labels[c]);
+            }
+            line.append('\n');
+            flushLine();
+        }
+    }
+
+    void write(ResultSet rs) throws SQLException, IOException {
+        beginRow();
+        for (int c = 0; c < labels.length; c++) {
+            if (format == Format.JSONL && numeric[c]) {
+                BigDecimal value = rs.getBigDecimal(c + 1);
+                appendValue(c, value == null ? null : value.toPlainString());
+            } else {
+                appendValue(c, rs.getString(c + 1));
+            }
+        }
+        endRow();
+    }
+
+    void write(Object[] values) throws IOException {
+        beginRow();
+        for (int c = 0; c < labels.length; c++) {
+            Object value = values[c];
+            appendValue(c, value == null ? null : value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString());
+        }
+        endRow();
+    }
+
+    static String[] labelsOf(ResultSetMetaData meta) throws SQLException {
+        String[] labels = new String[meta.getColumnCount()];
+        for (int c = 0; c < labels.length; c++) labels[c] = meta.getColumnLabel(c + 1);
+        return labels;
+    }
+
+    static boolean[] numericOf(ResultSetMetaData meta) throws SQLException {
+        boolean[] numeric = new boolean[meta.getColumnCount()];
+        for (int c = 0; c < numeric.length; c++) numeric[c] = isNumeric(meta.getColumnType(c + 1));
+        return numeric;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    long bytes() {
+        return bytes + out.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+    }
+
+    private void beginRow() {
+        if (format == Format.JSONL) line.append('{');
+    }
+
+    private void appendValue(int c, String value) {
+        if (format == Format.CSV) {
+            if (c > 0) line.append(',');
+            if (value != null) appendCsv(value);
+            return;
+        }
+
+        if (c > 0) line.append(',');
+        appendJsonString(labels[c]);
+        line.append(':');
+        if (value == null) line.append("null");
+        else if (numeric[c]) line.append(value);
+        else appendJsonString(value);
+    }
+
+    private void endRow() throws IOException {
+        if (format == Format.JSONL) line.append('}');
+        line.append('\n');
+        flushLine();
+        rows++;
+    }
+
+    private void flushLine() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        for (; ; ) {
+            CoderResult result = encoder.encode(chars, out, true);
+            if (result.isOverflow()) {
+                drain();
+                continue;
+            }
+            if (result.isError()) result.throwException();
+            break;
+        }
+        encoder.reset();
+        line.setLength(0);
+    }
+
+    private void drain() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) bytes += channel.write(out);
+        out.clear();
+    }
+
+    private void appendCsv(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') line.append('"');
+            line.append(ch);
+        }
+        line.append('"');
+    }
+
+    private void appendJsonString(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) line.append(String.format("\\u%04x", (int) ch));
+                    else line.append(ch);
+            }
+        }
+        line.append('"');
+    }
+
+    private static boolean isNumeric(int sqlType) {
+        switch (sqlType) {
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Weighted mix of point reads, updates and inserts described by a properties file (see scenario/customer_mix.properties).
+public final class ScenarioRunner {
+
+    private static final Logger LOGGER = Logger.getLogger(ScenarioRunner.class.getName());
+    private static final Pattern OP_KEY = Pattern.compile("op\\.([A-Za-z0-9_]+)\\.weight");
+    // Word boundary so a bind such as :key_from is not split into "?_from".
+    private static final Pattern KEY_PARAM = Pattern.compile(":key\\b");
+    private static final String MODE = "scenario";
+
+    private ScenarioRunner() {
+    }
+
+    public static void run(String path) {
+        try {
+            int workerThreads = Integer.parseInt(DataGeneratorUtils.requireEnv("THREADS"));
+            long durationSeconds = Long.parseLong(DataGeneratorUtils.requireEnv("DURATION"));
+
+            Properties props = load(path);
+            List<Operation> ops = parse(props);
+            int totalWeight = 0;
+            for (Operation op : ops) totalWeight += op.weight;
+            int[] cumulative = new int[ops.size()];
+            for (int i = 0, sum = 0; i < ops.size(); i++) cumulative[i] = sum += ops.get(i).weight;
+
+            LOGGER.log(Level.INFO, "START mode={0} threads={1} duration_s={2} scenario={3} ops={4}", new Object[]{MODE, workerThreads, durationSeconds, path, ops.size()});
+            for (Operation op : ops) {
+                LOGGER.log(Level.INFO, "SCENARIO_OP op={0} weight={1} keys={2} think_ms={3} sql={4}", new Object[]{op.name, op.weight, op.source == KeySource.RANGE ? op.keys.describe() : op.source.name().toLowerCase(), TimeUnit.NANOSECONDS.toMillis(op.thinkNs), op.sql});
+            }
+
+            PoolDataSource gdsPool = DataGeneratorUtils.createPool(props.getProperty("pool.url_env", "GDS_SEQ_URL"), LoadLoop.poolSize(workerThreads, StickySessions.enabled()));
+            ShardRouter router = StickySessions.enabled() ? ShardRouter.forPool(gdsPool) : null;
+            StickySessions sessions = router == null ? null : new StickySessions(gdsPool, router);
+            SnowflakeGenerator idGenerator = needsNewKeys(ops) ? new SnowflakeGenerator() : null;
+            int weightRange = totalWeight;
+
+            DataGeneratorUtils.runForDuration(MODE, workerThreads, durationSeconds, () -> {
+                Operation op = pick(ops, cumulative, ThreadLocalRandom.current().nextInt(weightRange));
+                try {
+                    long id = nextKey(op, idGenerator);
+                    if (id == 0) {
+                        op.skipped.increment();
+                        return;
+                    }
+                    BigDecimal key = BigDecimal.valueOf(id);
+                    DataGeneratorUtils.StatementBinder binder = op.defaultInsert ? ps -> DataGeneratorUtils.bindCustomer(ps, key) : ps -> bindKey(ps, op.keyBinds, key);
+
+                    long startNs = System.nanoTime();
+                    int rows = DataGeneratorUtils.executeByShardKey(gdsPool, sessions, "scenario_" + op.name, key, op.sql, binder);
+                    op.latency.recordSince(startNs);
+                    op.ops.increment();
+                    op.rows.add(rows);
+                    if (op.source == KeySource.NEW && DataGeneratorUtils.KEYS != null) DataGeneratorUtils.KEYS.record(id);
+                    RunErrors.succeeded();
+                } catch (Exception e) {
+                    op.errors.increment();
+                    DataGeneratorUtils.recordFailure(LOGGER, MODE, e);
+                }
+                if (op.thinkNs > 0) LoadLoop.thinkAfter(op.thinkNs);
+            }, sessions == null ? () -> {
+            } : sessions::closeCurrentThread);
+
+            for (Operation op : ops) {
+                LOGGER.log(Level.INFO, "SCENARIO_SUMMARY mode={0} op={1} ops={2} rows={3} errors={4} skipped={5}", new Object[]{MODE, op.name, op.ops.sum(), op.rows.sum(), op.errors.sum(), op.skipped.sum()});
+            }
+            if (sessions != null) sessions.logStats(MODE);
+            if (router != null) router.logStats(MODE);
+            DataGeneratorUtils.afterRun(MODE, gdsPool);
+            LOGGER.log(Level.INFO, "END mode={0}", MODE);
+        } catch (Exception e) {
+            DataGeneratorUtils.logFatalAndExit(LOGGER, MODE, e);
+        }
+    }
+
+    private static Operation pick(List<Operation> ops, int[] cumulative, int ticket) {
+        for (int i = 0; i < cumulative.length; i++) {
+            if (ticket < cumulative[i]) return ops.get(i);
+        }
+        return ops.get(ops.size() - 1);
+    }
+
+    // Zero means no key is available yet (written keys requested before any insert committed).
+    private static long nextKey(Operation op, SnowflakeGenerator idGenerator) {
+        switch (op.source) {
+            case NEW:
+                return idGenerator.nextId();
+            case WRITTEN:
+                return DataGeneratorUtils.KEYS.sample();
+            default:
+                return op.keyMin + op.keys.nextIndex();
+        }
+    }
+
+    private static void bindKey(PreparedStatement ps, int keyBinds, BigDecimal key) throws SQLException {
+        for (int i = 1; i <= keyBinds; i++) ps.setBigDecimal(i, key);
+    }
+
+    private static boolean needsNewKeys(List<Operation> ops) {
+        for (Operation op : ops) {
+            if (op.source == KeySource.NEW) return true;
+        }
+        return false;
+    }
+
+    private static Properties load(String path) throws Exception {
+        Properties props = new Properties();
+        Path file = Paths.get(path);
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                props.load(reader);
+            }
+            return props;
+        }
+        try (InputStream in = ScenarioRunner.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) throw new IllegalArgumentException("Scenario not found: " + path);
+            props.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        return props;
+    }
+
+    private static List<Operation> parse(Properties props) {
+        long keyMin = Long.parseLong(props.getProperty("keys.min", "1"));
+        String keyMax = props.getProperty("keys.max");
+
+        TreeSet<String> names = new TreeSet<>();
+        for (String key : props.stringPropertyNames()) {
+            Matcher m = OP_KEY.matcher(key);
+            if (m.matches()) names.add(m.group(1));
+        }
+        if (names.isEmpty()) throw new IllegalArgumentException("Scenario defines no op.<name>.weight entries");
+
+        List<Operation> ops = new ArrayList<>(names.size());
+        for (String name : names) {
+            String prefix = "op." + name + ".";
+            int weight = Integer.parseInt(props.getProperty(prefix + "weight").trim());
+            if (weight <= 0) continue;
+
+            KeySource source = KeySource.parse(props.getProperty(prefix + "keys", "range"));
+            String template = props.getProperty(prefix + "sql");
+            if (template == null && source != KeySource.NEW) throw new IllegalArgumentException("Missing " + prefix + "sql");
+            if (source == KeySource.WRITTEN && DataGeneratorUtils.KEYS == null) throw new IllegalArgumentException("op " + name + " reads written keys but KEY_TRACKER_CAPACITY is not set");
+
+            KeyDistribution keys = null;
+            if (source == KeySource.RANGE) {
+                if (keyMax == null) throw new IllegalArgumentException("Missing keys.max for op " + name);
+                keys = distribution(props, prefix, Long.parseLong(keyMax.trim()) - keyMin + 1);
+            }
+
+            long thinkNs = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(props.getProperty(prefix + "think_ms", "0").trim()));
+            ops.add(new Operation(name, weight, template, source, keys, keyMin, thinkNs));
+        }
+        if (ops.isEmpty()) throw new IllegalArgumentException("Scenario has no operation with a positive weight");
+        return ops;
+    }
+
+    private static KeyDistribution distribution(Properties props, String prefix, long size) {
+        switch (KeyDistribution.Kind.parse(props.getProperty(prefix + "distribution", "uniform"))) {
+            case ZIPFIAN:
+                return KeyDistribution.zipfian(size, Double.parseDouble(props.getProperty(prefix + "zipf_exponent", "0.99")));
+            case HOTSET:
+                return KeyDistribution.hotSet(size, Double.parseDouble(props.getProperty(prefix + "hot_fraction", "0.01")), Double.parseDouble(props.getProperty(prefix + "hot_probability", "0.9")));
+            default:
+                return KeyDistribution.uniform(size);
+        }
+    }
+
+    private enum KeySource {
+        RANGE, NEW, WRITTEN;
+
+        static KeySource parse(String value) {
+            return KeySource.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private static final class Operation {
+        final String name;
+        final int weight;
+        final String sql;
+        final int keyBinds;
+        final boolean defaultInsert;
+        final KeySource source;
+        final KeyDistribution keys;
+        final long keyMin;
+        final long thinkNs;
+        final LatencyTracker latency;
+        final LongAdder ops = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+
+        Operation(String name, int weight, String template, KeySource source, KeyDistribution keys, long keyMin, long thinkNs) {
+            this.name = name;
+            this.weight = weight;
+            this.defaultInsert = template == null;
+            this.sql = template == null ? DataGeneratorUtils.SQL_INSERT_CUSTOMER_ROW : KEY_PARAM.matcher(template.trim()).replaceAll("?");
+            this.keyBinds = template == null ? 1 : occurrences(template, KEY_PARAM);
+            this.source = source;
+            this.keys = keys;
+            this.keyMin = keyMin;
+            this.thinkNs = thinkNs;
+            this.latency = RunMetrics.tracker("op_" + name);
+            MetricsRegistry.counter("scenario_ops_total", "Scenario operations completed", ops::sum, "op", name);
+            MetricsRegistry.counter("scenario_errors_total", "Scenario operations that failed", errors::sum, "op", name);
+        }
+
+        private static int occurrences(String text, Pattern token) {
+            int count = 0;
+            for (Matcher m = token.matcher(text); m.find(); ) count++;
+            if (count == 0) throw new IllegalArgumentException("SQL must reference :key: " + text);
+            return count;
+        }
+    }
+}
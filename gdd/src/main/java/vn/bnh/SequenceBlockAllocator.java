@@ -0,0 +1,148 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class SequenceBlockAllocator implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SequenceBlockAllocator.class.getName());
+    private static final int MAX_REFILL_FAILURES = Env.getInt("SEQ_REFILL_MAX_FAILURES", 10);
+    private static final long REFILL_BACKOFF_MAX_MS = 5_000;
+
+    private final PoolDataSource pool;
+    private final String sql;
+    private final int blockSize;
+    private final int prefetchDepth;
+    private final BlockingQueue<Block> prefetched;
+    private final Thread refiller;
+
+    private volatile Block current = new Block(new long[0]);
+    private volatile Exception refillFailure;
+
+    private final LongAdder stalls = new LongAdder();
+    private final AtomicLong blocksFetched = new AtomicLong();
+    private final AtomicLong refillNanosTotal = new AtomicLong();
+    private final AtomicLong refillNanosMax = new AtomicLong();
+
+    SequenceBlockAllocator(PoolDataSource pool, String sequenceName, int blockSize, int prefetchDepth) {
+        if (blockSize <= 0 || prefetchDepth <= 0) throw new IllegalArgumentException();
+        this.pool = pool;
+        this.sql = "SELECT " + sequenceName + ".NEXTVAL FROM DUAL CONNECT BY LEVEL <= ?";
+        this.blockSize = blockSize;
+        this.prefetchDepth = prefetchDepth;
+        this.prefetched = new ArrayBlockingQueue<>(prefetchDepth);
+        this.refiller = new Thread(this::refillLoop, "seq-refill-" + sequenceName);
+        this.refiller.setDaemon(true);
+        this.refiller.start();
+        MetricsRegistry.gauge("sequence_prefetched_blocks", "Sequence blocks fetched ahead of use", prefetched::size, "sequence", sequenceName);
+    }
+
+    long nextId() throws Exception {
+        for (; ; ) {
+            Block block = current;
+            int i = block.next.getAndIncrement();
+            if (i < block.ids.length) return block.ids[i];
+            advance(block);
+        }
+    }
+
+    void logStats(String mode) {
+        long fetched = blocksFetched.get();
+        long avgUs = fetched == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(refillNanosTotal.get() / fetched);
+        LOGGER.log(Level.INFO, "SEQ_ALLOCATOR mode={0} block_size={1} prefetch_depth={2} blocks_fetched={3} refill_avg_us={4} refill_max_us={5} stalls={6}", new Object[]{mode, blockSize, prefetchDepth, fetched, avgUs, TimeUnit.NANOSECONDS.toMicros(refillNanosMax.get()), stalls.sum()});
+    }
+
+    @Override
+    public void close() {
+        refiller.interrupt();
+    }
+
+    private synchronized void advance(Block exhausted) throws Exception {
+        if (current != exhausted) return;
+
+        Block next = prefetched.poll();
+        if (next == null) {
+            stalls.increment();
+            while ((next = prefetched.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                Exception failure = refillFailure;
+                if (failure != null) throw failure;
+                if (!refiller.isAlive()) throw new IllegalStateException("sequence refill stopped");
+            }
+        }
+        current = next;
+    }
+
+    // The connection is kept across blocks and reopened after a failure; only a fatal error or
+    // MAX_REFILL_FAILURES consecutive failures reach nextId(), while the prefetched blocks cover the gaps.
+    private void refillLoop() {
+        int failures = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Connection conn = pool.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setFetchSize(blockSize);
+                ps.setInt(1, blockSize);
+
+                while (!Thread.currentThread().isInterrupted()) {
+                    long startNs = System.nanoTime();
+                    long[] ids = new long[blockSize];
+                    int n = 0;
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next() && n < ids.length) ids[n++] = rs.getLong(1);
+                    }
+                    if (n != blockSize) throw new IllegalStateException("short sequence block size=" + n);
+
+                    long elapsedNs = System.nanoTime() - startNs;
+                    blocksFetched.incrementAndGet();
+                    refillNanosTotal.addAndGet(elapsedNs);
+                    refillNanosMax.accumulateAndGet(elapsedNs, Math::max);
+                    failures = 0;
+
+                    prefetched.put(new Block(ids));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failures++;
+                if (SqlErrorClassifier.classify(e) == SqlErrorClassifier.Kind.FATAL || failures >= MAX_REFILL_FAILURES) {
+                    refillFailure = e;
+                    LOGGER.log(Level.SEVERE, "SEQ_REFILL_FAIL failures=" + failures + " sql=" + sql, e);
+                    return;
+                }
+                LOGGER.log(Level.WARNING, "SEQ_REFILL_RETRY failures={0} msg={1}", new Object[]{String.valueOf(failures), e.getMessage()});
+                try {
+                    backoff(failures);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Full jitter, as in RetryPolicy.
+    private static void backoff(int failures) throws InterruptedException {
+        long ceiling = Math.min(REFILL_BACKOFF_MAX_MS, 100L << Math.min(failures - 1, 20));
+        TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private static final class Block {
+        final long[] ids;
+        final AtomicInteger next = new AtomicInteger();
+
+        Block(long[] ids) {
+            this.ids = ids;
+        }
+    }
+}
@@ -2,46 +2,35 @@ package vn.bnh;
 
 import oracle.ucp.jdbc.PoolDataSource;
 
-import java.math.BigDecimal;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public final class SequenceCustomerGenerator {
 
     private static final Logger LOGGER = Logger.getLogger(SequenceCustomerGenerator.class.getName());
-    private static final String SQL_NEXTVAL = "SELECT DATA_SUBCRIBER_SEQ.NEXTVAL FROM DUAL";
+    private static final String SEQUENCE_NAME = "DATA_SUBCRIBER_SEQ";
 
     private SequenceCustomerGenerator() {
     }
 
-    private static BigDecimal fetchNextId(PoolDataSource catalogPool) throws Exception {
-        try (Connection conn = catalogPool.getConnection(); PreparedStatement ps = conn.prepareStatement(SQL_NEXTVAL); ResultSet rs = ps.executeQuery()) {
-            rs.next();
-            return rs.getBigDecimal(1);
-        }
-    }
-
     public static void run() {
         try {
             int workerThreads = Integer.parseInt(DataGeneratorUtils.requireEnv("THREADS"));
             long durationSeconds = Long.parseLong(DataGeneratorUtils.requireEnv("DURATION"));
+            int blockSize = Integer.parseInt(DataGeneratorUtils.optionalEnv("SEQ_BLOCK_SIZE", "1000"));
+            int prefetchDepth = Integer.parseInt(DataGeneratorUtils.optionalEnv("SEQ_PREFETCH_DEPTH", "2"));
+
+            LOGGER.log(Level.INFO, "START mode=sequence threads={0} duration_s={1} seq_block_size={2} seq_prefetch_depth={3}", new Object[]{workerThreads, durationSeconds, blockSize, prefetchDepth});
 
-            LOGGER.log(Level.INFO, "START mode=sequence threads={0} duration_s={1}", new Object[]{workerThreads, durationSeconds});
+            PoolDataSource catalogPool = DataGeneratorUtils.createPool("CATALOG_URL", 1);
+            PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_SEQ_URL", LoadLoop.poolSize(workerThreads, DataGeneratorUtils.customerInsertsHoldConnections()));
 
-            PoolDataSource catalogPool = DataGeneratorUtils.createPool("CATALOG_URL", workerThreads);
-            PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_SEQ_URL", workerThreads);
+            try (SequenceBlockAllocator allocator = new SequenceBlockAllocator(catalogPool, SEQUENCE_NAME, blockSize, prefetchDepth)) {
+                DataGeneratorUtils.runCustomerInserts("sequence", LOGGER, workerThreads, durationSeconds, gdsPool, allocator::nextId);
 
-            DataGeneratorUtils.runForDuration(workerThreads, durationSeconds, () -> {
-                try {
-                    BigDecimal id = fetchNextId(catalogPool);
-                    DataGeneratorUtils.insertCustomerById(gdsPool, id);
-                } catch (Exception e) {
-                    DataGeneratorUtils.logStopAndExit(LOGGER, "sequence", e);
-                }
-            });
+                allocator.logStats("sequence");
+            }
+            DataGeneratorUtils.afterRun("sequence", gdsPool);
 
             LOGGER.log(Level.INFO, "END mode=sequence");
         } catch (Exception e) {
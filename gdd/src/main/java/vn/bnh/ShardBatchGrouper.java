@@ -0,0 +1,66 @@
+package vn.bnh;
+
+import java.util.Arrays;
+
+// Per-worker grouping of primitive IDs by shard index; buffers are reused across batches so steady state allocates nothing.
+final class ShardBatchGrouper {
+
+    private final ShardIndexer router;
+    private final int capacity;
+
+    private long[][] ids = new long[0][];
+    private int[] counts = new int[0];
+    private int[] order = new int[0];
+    private int groups;
+
+    ShardBatchGrouper(ShardIndexer router, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        this.router = router;
+        this.capacity = capacity;
+    }
+
+    // Regroups ids[0..n); groups keep the order in which their shard was first seen.
+    void group(long[] batch, int n) throws Exception {
+        if (n > capacity) throw new IllegalArgumentException("batch " + n + " exceeds grouper capacity " + capacity);
+        for (int g = 0; g < groups; g++) counts[order[g]] = 0;
+        groups = 0;
+
+        for (int i = 0; i < n; i++) {
+            long id = batch[i];
+            int shard = router.resolveShardIndex(id);
+            if (shard >= ids.length) grow(shard + 1);
+            if (counts[shard] == 0) order[groups++] = shard;
+            ids[shard][counts[shard]++] = id;
+        }
+    }
+
+    int groups() {
+        return groups;
+    }
+
+    int shardIndex(int group) {
+        return order[group];
+    }
+
+    long[] ids(int group) {
+        return ids[order[group]];
+    }
+
+    int count(int group) {
+        return counts[order[group]];
+    }
+
+    // ShardRouter::resolveShardIndex in the generators; benchmarks pass a stub so grouping is measured without a catalog.
+    @FunctionalInterface
+    interface ShardIndexer {
+        int resolveShardIndex(long key) throws Exception;
+    }
+
+    private void grow(int shards) {
+        int known = ids.length;
+        ids = Arrays.copyOf(ids, shards);
+        for (int s = known; s < shards; s++) ids[s] = new long[capacity];
+        counts = Arrays.copyOf(counts, shards);
+        order = Arrays.copyOf(order, shards);
+    }
+}
@@ -0,0 +1,153 @@
+package vn.bnh;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Snowflake IDs pre-sorted into per-shard buckets so a caller can take a full batch that lands on a single shard.
+final class ShardBucketedIdSource {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardBucketedIdSource.class.getName());
+    private static final int GENERATE_CHUNK = 256;
+
+    private final SnowflakeGenerator generator;
+    private final ShardRouter router;
+    private final int bucketCapacity;
+    private final ThreadLocal<Buckets> local = ThreadLocal.withInitial(this::register);
+    private final List<Buckets> all = new CopyOnWriteArrayList<>();
+    private final List<LongAdder> served = new CopyOnWriteArrayList<>();
+
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    ShardBucketedIdSource(SnowflakeGenerator generator, ShardRouter router, int bucketCapacity) {
+        if (bucketCapacity <= 0) throw new IllegalArgumentException();
+        this.generator = generator;
+        this.router = router;
+        this.bucketCapacity = bucketCapacity;
+        MetricsRegistry.counter("id_buckets_generated_total", "Snowflake IDs generated for shard buckets", generated::sum);
+        MetricsRegistry.counter("id_buckets_discarded_total", "Snowflake IDs dropped because their shard bucket was full", discarded::sum);
+    }
+
+    static boolean enabled() {
+        return Boolean.parseBoolean(DataGeneratorUtils.optionalEnv("SHARD_BUCKETED_IDS", "false"));
+    }
+
+    // Fills out[0..n) from the fullest bucket holding at least n IDs and returns that shard's index. Serving the fullest
+    // rather than the first keeps low-indexed shards from being favoured and drains the buckets closest to discarding.
+    int next(long[] out, int n) throws Exception {
+        checkBatch(out, n);
+        Buckets buckets = local.get();
+        for (; ; ) {
+            int[] sizes = buckets.sizes;
+            int fullest = -1;
+            for (int shard = 0; shard < sizes.length; shard++) {
+                if (sizes[shard] >= n && (fullest < 0 || sizes[shard] > sizes[fullest])) fullest = shard;
+            }
+            if (fullest >= 0) return take(buckets, fullest, out, n);
+            classifyChunk(buckets);
+        }
+    }
+
+    // Fills out[0..n) with IDs owned by shardIndex, generating and bucketing IDs for other shards as it goes.
+    void next(int shardIndex, long[] out, int n) throws Exception {
+        checkBatch(out, n);
+        Buckets buckets = local.get();
+        while (shardIndex >= buckets.sizes.length || buckets.sizes[shardIndex] < n) classifyChunk(buckets);
+        take(buckets, shardIndex, out, n);
+    }
+
+    void logStats(String mode) {
+        long[] fill = fillByShard();
+        for (int shard = 0; shard < fill.length; shard++) {
+            long taken = shard < served.size() ? served.get(shard).sum() : 0;
+            LOGGER.log(Level.INFO, "ID_BUCKET mode={0} shard={1} fill={2} served={3}", new Object[]{mode, router.shardName(shard), fill[shard], taken});
+        }
+        long total = generated.sum();
+        LOGGER.log(Level.INFO, "ID_BUCKETS mode={0} generated={1} discarded={2} discard_pct={3} bucket_capacity={4}", new Object[]{mode, total, discarded.sum(), total == 0 ? "0" : String.format("%.2f", discarded.sum() * 100.0 / total), bucketCapacity});
+    }
+
+    private void checkBatch(long[] out, int n) {
+        if (n <= 0 || n > out.length || n > bucketCapacity) throw new IllegalArgumentException("batch " + n + " exceeds buffer or ID_BUCKET_CAPACITY " + bucketCapacity);
+    }
+
+    private void classifyChunk(Buckets buckets) throws Exception {
+        long[] chunk = buckets.chunk;
+        generator.nextIds(chunk, chunk.length);
+        generated.add(chunk.length);
+
+        for (long id : chunk) {
+            int shard = router.resolveShardIndex(id);
+            buckets.ensure(shard, bucketCapacity);
+            if (buckets.sizes[shard] == bucketCapacity) {
+                discarded.increment();
+                continue;
+            }
+            buckets.ids[shard][buckets.sizes[shard]++] = id;
+        }
+    }
+
+    private int take(Buckets buckets, int shard, long[] out, int n) {
+        long[] bucket = buckets.ids[shard];
+        int remaining = buckets.sizes[shard] - n;
+        // Serve the oldest IDs first and slide the rest down so bucket order stays time-ordered.
+        System.arraycopy(bucket, 0, out, 0, n);
+        System.arraycopy(bucket, n, bucket, 0, remaining);
+        buckets.sizes[shard] = remaining;
+        servedCounter(shard).add(n);
+        return shard;
+    }
+
+    private LongAdder servedCounter(int shard) {
+        while (served.size() <= shard) {
+            synchronized (served) {
+                if (served.size() <= shard) {
+                    LongAdder counter = new LongAdder();
+                    int index = served.size();
+                    served.add(counter);
+                    MetricsRegistry.gauge("id_bucket_fill", "Classified IDs waiting in per-worker buckets", () -> fillOf(index), "shard", router.shardName(index));
+                }
+            }
+        }
+        return served.get(shard);
+    }
+
+    private long fillOf(int shard) {
+        long fill = 0;
+        for (Buckets buckets : all) {
+            int[] sizes = buckets.sizes;
+            if (shard < sizes.length) fill += sizes[shard];
+        }
+        return fill;
+    }
+
+    private long[] fillByShard() {
+        long[] fill = new long[router.knownShardCount()];
+        for (int shard = 0; shard < fill.length; shard++) fill[shard] = fillOf(shard);
+        return fill;
+    }
+
+    private Buckets register() {
+        Buckets buckets = new Buckets();
+        all.add(buckets);
+        return buckets;
+    }
+
+    // Owned by one worker thread; other threads only read sizes for reporting.
+    private static final class Buckets {
+        final long[] chunk = new long[GENERATE_CHUNK];
+        long[][] ids = new long[0][];
+        volatile int[] sizes = new int[0];
+
+        void ensure(int shard, int capacity) {
+            if (shard < ids.length) return;
+            long[][] grown = Arrays.copyOf(ids, shard + 1);
+            for (int i = ids.length; i < grown.length; i++) grown[i] = new long[capacity];
+            ids = grown;
+            sizes = Arrays.copyOf(sizes, grown.length);
+        }
+    }
+}
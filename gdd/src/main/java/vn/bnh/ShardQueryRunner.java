@@ -2,19 +2,31 @@ package vn.bnh;
 
 import oracle.ucp.jdbc.PoolDataSource;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public final class ShardQueryRunner {
 
     private static final Logger LOGGER = Logger.getLogger(ShardQueryRunner.class.getName());
+    private static final long PROGRESS_INTERVAL_NS = TimeUnit.SECONDS.toNanos(5);
 
     private ShardQueryRunner() {
     }
@@ -22,6 +34,12 @@ public final class ShardQueryRunner {
     public static void run(String[] args) throws Exception {
         String sql = null;
         BigDecimal shardKey = null;
+        String output = null;
+        RowStreamWriter.Format format = RowStreamWriter.Format.CSV;
+        int fetchSize = 0;
+        boolean allShards = false;
+        String orderBy = null;
+        ShardScatterGather.Combine[] combine = null;
 
         for (int i = 0; i < args.length; i++) {
             if ("--query".equals(args[i])) {
@@ -30,10 +48,46 @@ public final class ShardQueryRunner {
             }
             if ("--sharding-key".equals(args[i])) {
                 shardKey = new BigDecimal(args[++i]);
+                continue;
+            }
+            if ("--output".equals(args[i])) {
+                output = args[++i];
+                continue;
+            }
+            if ("--format".equals(args[i])) {
+                format = RowStreamWriter.Format.parse(args[++i]);
+                continue;
+            }
+            if ("--fetch-size".equals(args[i])) {
+                fetchSize = Integer.parseInt(args[++i]);
+                continue;
+            }
+            if ("--all-shards".equals(args[i])) {
+                allShards = true;
+                continue;
+            }
+            if ("--order-by".equals(args[i])) {
+                orderBy = args[++i];
+                continue;
+            }
+            if ("--combine".equals(args[i])) {
+                combine = ShardScatterGather.parseCombine(args[++i]);
             }
         }
 
         if (sql == null) throw new IllegalArgumentException("Missing --query");
+
+        if (allShards) {
+            PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_PROC_URL", 1);
+            int queueCapacity = Integer.parseInt(DataGeneratorUtils.optionalEnv("SCATTER_QUEUE_CAPACITY", "1024"));
+            ShardScatterGather scatter = new ShardScatterGather(gdsPool, sql, fetchSize > 0 ? fetchSize : 1_000, queueCapacity);
+
+            try (WritableByteChannel channel = openOutput(output == null ? "-" : output)) {
+                scatter.run(channel, format, orderBy, combine);
+            }
+            return;
+        }
+
         if (shardKey == null) throw new IllegalArgumentException("Missing --sharding-key");
 
         PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_PROC_URL", 1);
@@ -41,25 +95,81 @@ public final class ShardQueryRunner {
         try (Connection shardConn = DataGeneratorUtils.openConnectionByShardKey(gdsPool, shardKey); PreparedStatement shardPs = shardConn.prepareStatement("SELECT name FROM v$database"); ResultSet shardRs = shardPs.executeQuery()) {
 
             shardRs.next();
-            LOGGER.log(Level.INFO, "SHARD={0}", shardRs.getString(1));
+            String shardName = shardRs.getString(1);
+            LOGGER.log(Level.INFO, "SHARD={0}", shardName);
+
+            try (PreparedStatement ps = shardConn.prepareStatement(sql)) {
+                if (output != null) {
+                    ps.setFetchSize(fetchSize > 0 ? fetchSize : 1_000);
+                    export(shardName, ps, output, format);
+                    return;
+                }
 
-            try (PreparedStatement ps = shardConn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+                if (fetchSize > 0) ps.setFetchSize(fetchSize);
 
-                ResultSetMetaData meta = rs.getMetaData();
-                int columnCount = meta.getColumnCount();
-                int rowCount = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    int columnCount = meta.getColumnCount();
+                    int rowCount = 0;
 
-                while (rs.next()) {
-                    Map<String, Object> row = new LinkedHashMap<>();
-                    for (int c = 1; c <= columnCount; c++) {
-                        row.put(meta.getColumnLabel(c), rs.getObject(c));
+                    while (rs.next()) {
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        for (int c = 1; c <= columnCount; c++) {
+                            row.put(meta.getColumnLabel(c), rs.getObject(c));
+                        }
+                        LOGGER.log(Level.INFO, "ROW={0}", row);
+                        rowCount++;
                     }
-                    LOGGER.log(Level.INFO, "ROW={0}", row);
-                    rowCount++;
+
+                    LOGGER.log(Level.INFO, "ROWS={0}", rowCount);
                 }
+            }
+        }
+    }
+
+    private static void export(String shardName, PreparedStatement ps, String output, RowStreamWriter.Format format) throws Exception {
+        LOGGER.log(Level.INFO, "EXPORT_START shard={0} output={1} format={2} fetch_size={3}", new Object[]{shardName, output, format, ps.getFetchSize()});
 
-                LOGGER.log(Level.INFO, "ROWS={0}", rowCount);
+        long startNs = System.nanoTime();
+        long nextProgressNs = startNs + PROGRESS_INTERVAL_NS;
+
+        try (WritableByteChannel channel = openOutput(output); ResultSet rs = ps.executeQuery(); RowStreamWriter writer = new RowStreamWriter(channel, format, rs.getMetaData())) {
+            while (rs.next()) {
+                writer.write(rs);
+
+                if ((writer.rows() & 0x3FF) == 0 && System.nanoTime() - nextProgressNs >= 0) {
+                    logRate("EXPORT_PROGRESS", shardName, writer, System.nanoTime() - startNs);
+                    nextProgressNs += PROGRESS_INTERVAL_NS;
+                }
             }
+
+            writer.close();
+            logRate("EXPORT_DONE", shardName, writer, System.nanoTime() - startNs);
         }
     }
+
+    private static WritableByteChannel openOutput(String output) throws Exception {
+        if ("-".equals(output)) return Channels.newChannel(stdout());
+        return FileChannel.open(Paths.get(output), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // Closing the output channel must not close fd 1: later logging and the JVM's own shutdown still write to it.
+    private static OutputStream stdout() {
+        return new FilterOutputStream(new FileOutputStream(FileDescriptor.out)) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    private static void logRate(String event, String shardName, RowStreamWriter writer, long elapsedNs) {
+        double seconds = Math.max(elapsedNs, 1) / 1e9;
+        LOGGER.log(Level.INFO, event + " shard={0} rows={1} bytes={2} elapsed_ms={3} rows_s={4} bytes_s={5}", new Object[]{shardName, writer.rows(), writer.bytes(), TimeUnit.NANOSECONDS.toMillis(elapsedNs), Math.round(writer.rows() / seconds), Math.round(writer.bytes() / seconds)});
+    }
 }
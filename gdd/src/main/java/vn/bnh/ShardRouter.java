@@ -0,0 +1,201 @@
+package vn.bnh;
+
+import oracle.jdbc.OracleShardingKey;
+import oracle.jdbc.OracleType;
+import oracle.ucp.routing.ChunkInfo;
+import oracle.ucp.routing.ShardInfo;
+import oracle.ucp.routing.oracle.OracleShardRoutingCache;
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+final class ShardRouter {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardRouter.class.getName());
+    private static final Pattern SERVICE_NAME = Pattern.compile("SERVICE_NAME\\s*=\\s*([^)\\s]+)", Pattern.CASE_INSENSITIVE);
+    private static final int MAX_CHUNK_ID = 1 << 16;
+    private static final int UNKNOWN = -1;
+
+    // One router per GDS pool, so the generator and the direct shard pools share a routing cache and one set of metrics.
+    private static final Map<PoolDataSource, ShardRouter> ROUTERS = new ConcurrentHashMap<>();
+
+    private final PoolDataSource gdsPool;
+    private final Properties catalogProperties;
+    private final OracleShardRoutingCache routingCache;
+    private final List<String> shardNames = new CopyOnWriteArrayList<>();
+
+    private volatile int[] chunkToShard = new int[0];
+    private volatile boolean stale;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    private ShardRouter(PoolDataSource gdsPool, Properties catalogProperties, OracleShardRoutingCache routingCache) {
+        this.gdsPool = gdsPool;
+        this.catalogProperties = catalogProperties;
+        this.routingCache = routingCache;
+    }
+
+    static ShardRouter forPool(PoolDataSource gdsPool) {
+        return ROUTERS.computeIfAbsent(gdsPool, ShardRouter::create);
+    }
+
+    private static ShardRouter create(PoolDataSource gdsPool) {
+        Properties props = new Properties();
+        props.setProperty(OracleShardRoutingCache.URL, DataGeneratorUtils.requireEnv("CATALOG_URL"));
+        props.setProperty(OracleShardRoutingCache.USER, DataGeneratorUtils.requireEnv("GDD_USERNAME"));
+        props.setProperty(OracleShardRoutingCache.PASSWORD, DataGeneratorUtils.requireEnv("GDD_PASSWORD"));
+        String service = DataGeneratorUtils.optionalEnv("ROUTING_SERVICE_NAME", null);
+        props.setProperty(OracleShardRoutingCache.SERVICE_NAME, service != null ? service : serviceNameOf(gdsPool.getURL()));
+
+        // Without the catalog every lookup would be a probe round trip per key, which is what this router exists to avoid.
+        OracleShardRoutingCache cache;
+        try {
+            cache = new OracleShardRoutingCache(props);
+            LOGGER.log(Level.INFO, "ROUTING_CACHE_OK service={0}", props.getProperty(OracleShardRoutingCache.SERVICE_NAME));
+        } catch (Exception e) {
+            throw new IllegalStateException("Shard routing cache unavailable; check CATALOG_URL and ROUTING_SERVICE_NAME", e);
+        }
+
+        ShardRouter router = new ShardRouter(gdsPool, props, cache);
+        MetricsRegistry.counter("routing_cache_reloads_total", "Client-side routing cache reloads", router.refreshes::get);
+        MetricsRegistry.counter("routing_lookups_total", "Shard lookups answered by the chunk index", router.hits::sum, "result", "hit");
+        MetricsRegistry.counter("routing_lookups_total", "Shard lookups answered by the chunk index", router.misses::sum, "result", "miss");
+        DataGeneratorUtils.addRoutingInvalidationListener(router::invalidate);
+        return router;
+    }
+
+    int resolveShardIndex(BigDecimal shardKey) throws Exception {
+        return resolve(shardKey);
+    }
+
+    int resolveShardIndex(long shardKey) throws Exception {
+        return resolve(shardKey);
+    }
+
+    // subkey is a BigDecimal or a Long; both bind as NUMBER, so the hot path never builds a BigDecimal.
+    private int resolve(Object subkey) throws Exception {
+        if (stale) reload();
+
+        ChunkInfo chunk = routingCache.getChunkInfoForKey(buildShardingKey(subkey), null);
+        if (chunk != null) {
+            int chunkId = chunk.getChunkUniqueId();
+            int[] index = chunkToShard;
+            if (chunkId >= 0 && chunkId < index.length && index[chunkId] != UNKNOWN) {
+                hits.increment();
+                return index[chunkId];
+            }
+
+            String shardName = primaryShardName(chunk);
+            if (shardName != null) {
+                misses.increment();
+                return learn(chunkId, shardName);
+            }
+        }
+
+        // Chunk not (yet) in the catalog view, e.g. mid-split: probe this one key.
+        misses.increment();
+        BigDecimal shardKey = subkey instanceof BigDecimal ? (BigDecimal) subkey : BigDecimal.valueOf((Long) subkey);
+        return indexOf(DataGeneratorUtils.resolveShardNameByShardKey(gdsPool, shardKey));
+    }
+
+    String shardName(int shardIndex) {
+        return shardNames.get(shardIndex);
+    }
+
+    // True when a name probed from a session (DataGeneratorUtils.SQL_SHARD_NAME) is the shard at shardIndex.
+    boolean isShard(int shardIndex, String probedName) {
+        return shardNames.get(shardIndex).equals(identity(probedName));
+    }
+
+    int knownShardCount() {
+        return shardNames.size();
+    }
+
+    void invalidate() {
+        stale = true;
+    }
+
+    void logStats(String mode) {
+        LOGGER.log(Level.INFO, "ROUTING_STATS mode={0} hits={1} misses={2} refreshes={3} shards={4}", new Object[]{mode, hits.sum(), misses.sum(), refreshes.get(), shardNames.size()});
+    }
+
+    private synchronized void reload() {
+        if (!stale) return;
+        stale = false;
+        chunkToShard = new int[0];
+
+        try {
+            routingCache.reloadCache(catalogProperties);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "ROUTING_CACHE_RELOAD_FAIL msg={0}", e.getMessage());
+        }
+
+        long total = refreshes.incrementAndGet();
+        LOGGER.log(Level.WARNING, "ROUTING_CACHE_RELOADED total={0}", total);
+    }
+
+    private synchronized int learn(int chunkId, String shardName) {
+        int shardIndex = indexOf(shardName);
+        if (chunkId < 0 || chunkId >= MAX_CHUNK_ID) return shardIndex;
+
+        int[] index = chunkToShard;
+        if (chunkId >= index.length) {
+            int[] grown = Arrays.copyOf(index, Math.max(chunkId + 1, index.length * 2));
+            Arrays.fill(grown, index.length, grown.length, UNKNOWN);
+            index = grown;
+        } else {
+            index = index.clone();
+        }
+        index[chunkId] = shardIndex;
+        chunkToShard = index;
+        return shardIndex;
+    }
+
+    // Catalog ShardInfo names and probed names reach here alike, so both are reduced to one identity first; otherwise
+    // a shard learned from the catalog and again from a probe would hold two indices.
+    private synchronized int indexOf(String shardName) {
+        String identity = identity(shardName);
+        int existing = shardNames.indexOf(identity);
+        if (existing >= 0) return existing;
+        shardNames.add(identity);
+        return shardNames.size() - 1;
+    }
+
+    // The catalog reports shard names in lower case, the probe in the database's own case.
+    private static String identity(String shardName) {
+        return shardName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private OracleShardingKey buildShardingKey(Object subkey) throws Exception {
+        return routingCache.getShardingKeyBuilder().subkey(subkey, OracleType.NUMBER).build();
+    }
+
+    private static String primaryShardName(ChunkInfo chunk) {
+        ShardInfo primary = null;
+        for (ShardInfo shard : chunk.getShardInfo()) {
+            if (primary == null || shard.getPriority() < primary.getPriority()) primary = shard;
+        }
+        return primary == null ? null : primary.getName();
+    }
+
+    private static String serviceNameOf(String url) {
+        Matcher m = SERVICE_NAME.matcher(url == null ? "" : url);
+        if (!m.find()) throw new IllegalStateException("Missing env: ROUTING_SERVICE_NAME");
+        return m.group(1);
+    }
+}
@@ -0,0 +1,298 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.math.BigDecimal;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class ShardScatterGather {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardScatterGather.class.getName());
+    private static final Object[] END = new Object[0];
+
+    enum Combine {
+        KEY, COUNT, SUM, MIN, MAX
+    }
+
+    private final PoolDataSource gdsPool;
+    private final String sql;
+    private final int fetchSize;
+    private final int queueCapacity;
+
+    private volatile String[] labels;
+    private volatile boolean[] numeric;
+    private final CountDownLatch described = new CountDownLatch(1);
+
+    ShardScatterGather(PoolDataSource gdsPool, String sql, int fetchSize, int queueCapacity) {
+        this.gdsPool = gdsPool;
+        this.sql = sql;
+        this.fetchSize = fetchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    void run(WritableByteChannel channel, RowStreamWriter.Format format, String orderBy, Combine[] combine) throws Exception {
+        int expectedShards = Integer.parseInt(DataGeneratorUtils.requireEnv("SHARDS"));
+        List<Lane> lanes = discover(ShardRouter.forPool(gdsPool), expectedShards);
+
+        long startNs = System.nanoTime();
+        for (Lane lane : lanes) lane.thread.start();
+
+        // Output columns are known only once the first shard has described the result set.
+        while (!described.await(100, TimeUnit.MILLISECONDS)) {
+            for (Lane lane : lanes) if (lane.failure != null) throw lane.failure;
+        }
+
+        long rows;
+        try (RowStreamWriter writer = new RowStreamWriter(channel, format, labels, numeric)) {
+            if (combine != null) {
+                combine(lanes, combine, writer);
+            } else if (orderBy != null) {
+                mergeOrdered(lanes, orderBy, columnIndex(orderBy), writer);
+            } else {
+                mergeUnordered(lanes, writer);
+            }
+            rows = writer.rows();
+        }
+
+        long elapsedNs = System.nanoTime() - startNs;
+        for (Lane lane : lanes) {
+            LOGGER.log(Level.INFO, "SCATTER_SHARD shard={0} rows={1} first_row_ms={2} elapsed_ms={3} queue_full_ms={4}", new Object[]{lane.shardName, lane.rows, TimeUnit.NANOSECONDS.toMillis(lane.firstRowNs), TimeUnit.NANOSECONDS.toMillis(lane.elapsedNs), TimeUnit.NANOSECONDS.toMillis(lane.blockedNs)});
+        }
+        LOGGER.log(Level.INFO, "SCATTER_DONE shards={0} rows_out={1} elapsed_ms={2}", new Object[]{lanes.size(), rows, TimeUnit.NANOSECONDS.toMillis(elapsedNs)});
+    }
+
+    private List<Lane> discover(ShardRouter router, int expectedShards) throws Exception {
+        Map<Integer, BigDecimal> keys = new LinkedHashMap<>();
+        int attempts = expectedShards * 64;
+
+        for (int i = 0; i < attempts && keys.size() < expectedShards; i++) {
+            BigDecimal key = BigDecimal.valueOf(ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE));
+            keys.putIfAbsent(router.resolveShardIndex(key), key);
+        }
+
+        if (keys.size() < expectedShards) {
+            LOGGER.log(Level.WARNING, "SCATTER_DISCOVERY_INCOMPLETE found={0} expected={1} probes={2}", new Object[]{keys.size(), expectedShards, attempts});
+        }
+
+        List<Lane> lanes = new ArrayList<>(keys.size());
+        for (Map.Entry<Integer, BigDecimal> entry : keys.entrySet()) {
+            lanes.add(new Lane(router.shardName(entry.getKey()), entry.getValue()));
+        }
+        LOGGER.log(Level.INFO, "SCATTER_START shards={0} fetch_size={1} queue_capacity={2}", new Object[]{lanes.size(), fetchSize, queueCapacity});
+        return lanes;
+    }
+
+    private void fetch(Lane lane) {
+        long startNs = System.nanoTime();
+        try (Connection conn = DataGeneratorUtils.openConnectionByShardKey(gdsPool, lane.routeKey); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setFetchSize(fetchSize);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columns = meta.getColumnCount();
+                describe(meta);
+
+                while (rs.next()) {
+                    Object[] row = new Object[columns];
+                    for (int c = 0; c < columns; c++) row[c] = rs.getObject(c + 1);
+
+                    if (lane.rows++ == 0) lane.firstRowNs = System.nanoTime() - startNs;
+                    if (!lane.queue.offer(row)) {
+                        long blockedAt = System.nanoTime();
+                        lane.queue.put(row);
+                        lane.blockedNs += System.nanoTime() - blockedAt;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            lane.failure = e;
+            LOGGER.log(Level.SEVERE, "SCATTER_SHARD_FAIL shard=" + lane.shardName, e);
+        } finally {
+            lane.elapsedNs = System.nanoTime() - startNs;
+            try {
+                lane.queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void describe(ResultSetMetaData meta) throws Exception {
+        if (labels != null) return;
+        numeric = RowStreamWriter.numericOf(meta);
+        labels = RowStreamWriter.labelsOf(meta);
+        described.countDown();
+    }
+
+    private void mergeUnordered(List<Lane> lanes, RowStreamWriter writer) throws Exception {
+        List<Lane> active = new ArrayList<>(lanes);
+        while (!active.isEmpty()) {
+            boolean progressed = false;
+            for (int i = active.size() - 1; i >= 0; i--) {
+                Lane lane = active.get(i);
+                Object[] row;
+                while ((row = lane.queue.poll()) != null) {
+                    progressed = true;
+                    if (row == END) {
+                        finish(lane);
+                        active.remove(i);
+                        break;
+                    }
+                    writer.write(row);
+                }
+            }
+            if (!progressed && !active.isEmpty()) {
+                Lane lane = active.get(0);
+                Object[] row = lane.queue.poll(10, TimeUnit.MILLISECONDS);
+                if (row == END) {
+                    finish(lane);
+                    active.remove(0);
+                } else if (row != null) {
+                    writer.write(row);
+                }
+            }
+        }
+    }
+
+    // The k-way merge is only correct when every shard returns its rows ascending on the column, i.e. the query
+    // itself ends in ORDER BY <col>; a lane that goes backwards fails the run instead of emitting a mis-sorted stream.
+    private void mergeOrdered(List<Lane> lanes, String orderBy, int column, RowStreamWriter writer) throws Exception {
+        PriorityQueue<Head> heads = new PriorityQueue<>(lanes.size(), (a, b) -> compare(a.row[column], b.row[column]));
+        for (Lane lane : lanes) {
+            Object[] row = lane.queue.take();
+            if (row == END) finish(lane);
+            else heads.add(new Head(lane, row));
+        }
+
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            writer.write(head.row);
+
+            Object[] next = head.lane.queue.take();
+            if (next == END) {
+                finish(head.lane);
+            } else {
+                if (compare(next[column], head.row[column]) < 0) {
+                    throw new IllegalStateException("--order-by " + orderBy + ": shard " + head.lane.shardName + " returned rows out of order; end the query with ORDER BY " + orderBy);
+                }
+                head.row = next;
+                heads.add(head);
+            }
+        }
+    }
+
+    private void combine(List<Lane> lanes, Combine[] combine, RowStreamWriter writer) throws Exception {
+        if (combine.length != labels.length) {
+            throw new IllegalArgumentException("--combine has " + combine.length + " entries, query returns " + labels.length + " columns");
+        }
+
+        Map<List<Object>, Object[]> groups = new LinkedHashMap<>();
+        for (Lane lane : lanes) {
+            Object[] row;
+            while ((row = lane.queue.take()) != END) {
+                List<Object> key = new ArrayList<>();
+                for (int c = 0; c < combine.length; c++) if (combine[c] == Combine.KEY) key.add(row[c]);
+
+                Object[] acc = groups.get(key);
+                if (acc == null) {
+                    groups.put(key, row);
+                    continue;
+                }
+                for (int c = 0; c < combine.length; c++) acc[c] = combineValue(combine[c], acc[c], row[c]);
+            }
+            finish(lane);
+        }
+
+        for (Object[] row : groups.values()) writer.write(row);
+    }
+
+    private static void finish(Lane lane) throws Exception {
+        if (lane.failure != null) throw lane.failure;
+    }
+
+    private static Object combineValue(Combine op, Object acc, Object value) {
+        if (acc == null) return value;
+        if (value == null) return acc;
+        switch (op) {
+            case COUNT:
+            case SUM:
+                return toDecimal(acc).add(toDecimal(value));
+            case MIN:
+                return compare(value, acc) < 0 ? value : acc;
+            case MAX:
+                return compare(value, acc) > 0 ? value : acc;
+            default:
+                return acc;
+        }
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a == null) return b == null ? 0 : 1;
+        if (b == null) return -1;
+        return ((Comparable) a).compareTo(b);
+    }
+
+    static Combine[] parseCombine(String spec) {
+        String[] parts = spec.split(",");
+        Combine[] combine = new Combine[parts.length];
+        for (int i = 0; i < parts.length; i++) combine[i] = Combine.valueOf(parts[i].trim().toUpperCase());
+        return combine;
+    }
+
+    private int columnIndex(String label) {
+        for (int c = 0; c < labels.length; c++) if (labels[c].equalsIgnoreCase(label)) return c;
+        throw new IllegalArgumentException("--order-by column not in result: " + label + " columns=" + Arrays.toString(labels));
+    }
+
+    private final class Lane {
+        final String shardName;
+        final BigDecimal routeKey;
+        final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final Thread thread;
+
+        volatile Exception failure;
+        volatile long rows;
+        volatile long firstRowNs;
+        volatile long elapsedNs;
+        volatile long blockedNs;
+
+        Lane(String shardName, BigDecimal routeKey) {
+            this.shardName = shardName;
+            this.routeKey = routeKey;
+            this.thread = new Thread(() -> fetch(this), "scatter-" + shardName);
+            this.thread.setDaemon(true);
+        }
+    }
+
+    private static final class Head {
+        final Lane lane;
+        Object[] row;
+
+        Head(Lane lane, Object[] row) {
+            this.lane = lane;
+            this.row = row;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class ShardWriterPipeline implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardWriterPipeline.class.getName());
+
+    private final String mode;
+    private final PoolDataSource gdsPool;
+    private final ShardRouter router;
+    private final StickySessions sessions;
+    private final boolean fullRows;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final long lingerNs;
+    private final int writersPerShard;
+    private final Function<String, AdaptiveShardController> adaptive;
+    private final ScheduledExecutorService depthReporter;
+
+    private volatile Lane[] lanes = new Lane[0];
+    private volatile boolean closed;
+
+    ShardWriterPipeline(String mode, PoolDataSource gdsPool, ShardRouter router, StickySessions sessions, boolean fullRows, int batchSize, int queueCapacity, long lingerMs, int writersPerShard, long reportIntervalSeconds, Function<String, AdaptiveShardController> adaptive) {
+        this.mode = mode;
+        this.gdsPool = gdsPool;
+        this.router = router;
+        this.sessions = sessions;
+        this.fullRows = fullRows;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.lingerNs = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.writersPerShard = writersPerShard;
+        this.adaptive = adaptive;
+
+        this.depthReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pipeline-depth");
+            t.setDaemon(true);
+            return t;
+        });
+        this.depthReporter.scheduleAtFixedRate(this::logDepths, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    void submit(long customerId) throws Exception {
+        Lane lane = lane(router.resolveShardIndex(customerId));
+        lane.queue.put(customerId);
+        // Plain read first so the CAS only happens while the high-water mark is still rising.
+        int depth = lane.queue.size();
+        if (depth > lane.maxDepth.get()) lane.maxDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        // Lanes are indexed by shard and created on first use, so shards that never received a row leave null gaps.
+        for (Lane lane : lanes) {
+            if (lane == null) continue;
+            for (Thread writer : lane.writers) writer.join();
+        }
+        depthReporter.shutdownNow();
+
+        for (Lane lane : lanes) {
+            if (lane == null) continue;
+            LOGGER.log(Level.INFO, "PIPELINE_SUMMARY shard={0} rows={1} batches={2} failed_rows={3} max_depth={4}", new Object[]{router.shardName(lane.shardIndex), lane.rows.sum(), lane.batches.sum(), lane.failedRows.sum(), lane.maxDepth.get()});
+        }
+    }
+
+    private Lane lane(int shardIndex) {
+        Lane[] current = lanes;
+        if (shardIndex < current.length && current[shardIndex] != null) return current[shardIndex];
+        return createLane(shardIndex);
+    }
+
+    private synchronized Lane createLane(int shardIndex) {
+        Lane[] current = lanes;
+        if (shardIndex < current.length && current[shardIndex] != null) return current[shardIndex];
+
+        AdaptiveShardController controller = adaptive == null ? null : adaptive.apply(router.shardName(shardIndex));
+        Lane lane = new Lane(shardIndex, new ArrayBlockingQueue<>(queueCapacity), controller);
+        for (int w = 0; w < writersPerShard; w++) {
+            Thread writer = new Thread(() -> drain(lane), "shard-writer-" + router.shardName(shardIndex) + "-" + w);
+            writer.setDaemon(true);
+            lane.writers.add(writer);
+        }
+
+        Lane[] grown = Arrays.copyOf(current, Math.max(current.length, shardIndex + 1));
+        grown[shardIndex] = lane;
+        lanes = grown;
+
+        MetricsRegistry.gauge("pipeline_queue_depth", "IDs queued for a shard writer", lane.queue::size, "shard", router.shardName(shardIndex));
+        MetricsRegistry.counter("pipeline_rows_total", "Rows written by the shard writers", lane.rows::sum, "shard", router.shardName(shardIndex));
+
+        for (Thread writer : lane.writers) writer.start();
+        return lane;
+    }
+
+    private void drain(Lane lane) {
+        long[] buffer = new long[batchSize];
+        CircuitBreaker breaker = CircuitBreaker.forName("shard:" + router.shardName(lane.shardIndex));
+
+        try {
+            for (; ; ) {
+                AdaptiveShardController controller = lane.controller;
+                if (controller != null) controller.acquire();
+
+                int n = fill(lane.queue, buffer, controller == null ? buffer.length : controller.batchSize());
+                if (n == 0) {
+                    if (controller != null) controller.releaseIdle();
+                    if (closed && lane.queue.isEmpty()) break;
+                    continue;
+                }
+
+                long startNs = System.nanoTime();
+                try {
+                    DataGeneratorUtils.callInsertCustomerBatchWithRetry(gdsPool, sessions, breaker, buffer, n, fullRows, controller == null ? null : controller::onOraError);
+                } catch (Exception e) {
+                    if (controller != null) controller.releaseFailed();
+                    lane.failedRows.add(n);
+                    DataGeneratorUtils.recordFailure(LOGGER, mode, e);
+                    continue;
+                }
+                if (controller != null) controller.release(System.nanoTime() - startNs);
+                lane.rows.add(n);
+                lane.batches.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (sessions != null) sessions.closeCurrentThread();
+        }
+    }
+
+    // Waits at most lingerNs after the first row for the batch to fill up.
+    private int fill(BlockingQueue<Long> queue, long[] buffer, int limit) throws InterruptedException {
+        Long first = queue.poll(lingerNs, TimeUnit.NANOSECONDS);
+        if (first == null) return 0;
+
+        buffer[0] = first;
+        int n = 1;
+        long deadlineNs = System.nanoTime() + lingerNs;
+
+        while (n < limit) {
+            Long next = queue.poll();
+            if (next == null) {
+                long remainingNs = deadlineNs - System.nanoTime();
+                if (remainingNs <= 0 || closed) break;
+                next = queue.poll(remainingNs, TimeUnit.NANOSECONDS);
+                if (next == null) break;
+            }
+            buffer[n++] = next;
+        }
+        return n;
+    }
+
+    private void logDepths() {
+        for (Lane lane : lanes) {
+            if (lane == null) continue;
+            int depth = lane.queue.size();
+            LOGGER.log(Level.INFO, "PIPELINE_DEPTH shard={0} depth={1} capacity={2} rows={3} batches={4}", new Object[]{router.shardName(lane.shardIndex), depth, queueCapacity, lane.rows.sum(), lane.batches.sum()});
+        }
+    }
+
+    private static final class Lane {
+        final int shardIndex;
+        final BlockingQueue<Long> queue;
+        final List<Thread> writers = new ArrayList<>();
+        final LongAdder rows = new LongAdder();
+        final LongAdder batches = new LongAdder();
+        final LongAdder failedRows = new LongAdder();
+        final AdaptiveShardController controller;
+        final AtomicInteger maxDepth = new AtomicInteger();
+
+        Lane(int shardIndex, BlockingQueue<Long> queue, AdaptiveShardController controller) {
+            this.shardIndex = shardIndex;
+            this.queue = queue;
+            this.controller = controller;
+        }
+    }
+}
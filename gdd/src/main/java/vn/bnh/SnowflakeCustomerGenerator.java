@@ -2,7 +2,6 @@ package vn.bnh;
 
 import oracle.ucp.jdbc.PoolDataSource;
 
-import java.math.BigDecimal;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,16 +20,10 @@ public final class SnowflakeCustomerGenerator {
 
             LOGGER.log(Level.INFO, "START mode=snowflake threads={0} duration_s={1}", new Object[]{workerThreads, durationSeconds});
 
-            PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_SEQ_URL", workerThreads);
+            PoolDataSource gdsPool = DataGeneratorUtils.createPool("GDS_SEQ_URL", LoadLoop.poolSize(workerThreads, DataGeneratorUtils.customerInsertsHoldConnections()));
 
-            DataGeneratorUtils.runForDuration(workerThreads, durationSeconds, () -> {
-                try {
-                    BigDecimal id = BigDecimal.valueOf(ID_GENERATOR.nextId());
-                    DataGeneratorUtils.insertCustomerById(gdsPool, id);
-                } catch (Exception e) {
-                    DataGeneratorUtils.logStopAndExit(LOGGER, "snowflake", e);
-                }
-            });
+            DataGeneratorUtils.runCustomerInserts("snowflake", LOGGER, workerThreads, durationSeconds, gdsPool, ID_GENERATOR::nextId);
+            DataGeneratorUtils.afterRun("snowflake", gdsPool);
 
             LOGGER.log(Level.INFO, "END mode=snowflake");
         } catch (Exception e) {
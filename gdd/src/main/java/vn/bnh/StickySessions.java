@@ -0,0 +1,141 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class StickySessions {
+
+    private static final Logger LOGGER = Logger.getLogger(StickySessions.class.getName());
+
+    private final PoolDataSource gdsPool;
+    private final ShardRouter router;
+    private final ThreadLocal<List<Session>> local = ThreadLocal.withInitial(ArrayList::new);
+    private final Set<Session> open = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    StickySessions(PoolDataSource gdsPool, ShardRouter router) {
+        this.gdsPool = gdsPool;
+        this.router = router;
+    }
+
+    static boolean enabled() {
+        return Boolean.parseBoolean(DataGeneratorUtils.optionalEnv("STICKY_CONNECTIONS", "false"));
+    }
+
+    // A failed session is dropped and the error rethrown; the caller's RetryPolicy decides whether to retry on a new one.
+    void execute(BigDecimal shardKey, SessionCall call) throws Exception {
+        Session session = session(shardKey);
+        try {
+            call.run(session);
+        } catch (SQLException e) {
+            discard(session);
+            LOGGER.log(Level.WARNING, "STICKY_RECONNECT shard={0} key={1} msg={2}", new Object[]{router.shardName(session.shardIndex), String.valueOf(shardKey), e.getMessage()});
+            throw e;
+        }
+    }
+
+    void closeCurrentThread() {
+        List<Session> sessions = local.get();
+        for (Session session : sessions) {
+            if (session == null) continue;
+            open.remove(session);
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    void closeAll() {
+        for (Session session : open) session.close();
+        open.clear();
+    }
+
+    void logStats(String mode) {
+        LOGGER.log(Level.INFO, "STICKY_SESSIONS mode={0} opened={1} reconnects={2} open={3}", new Object[]{mode, opened.sum(), reconnects.sum(), open.size()});
+    }
+
+    private Session session(BigDecimal shardKey) throws Exception {
+        int shardIndex = router.resolveShardIndex(shardKey);
+        List<Session> sessions = local.get();
+        while (sessions.size() <= shardIndex) sessions.add(null);
+
+        Session session = sessions.get(shardIndex);
+        if (session == null) {
+            Connection conn = DataGeneratorUtils.openConnectionByShardKey(gdsPool, shardKey);
+            conn.setAutoCommit(false);
+            session = new Session(shardIndex, conn);
+            sessions.set(shardIndex, session);
+            open.add(session);
+            opened.increment();
+        }
+        return session;
+    }
+
+    private void discard(Session session) {
+        local.get().set(session.shardIndex, null);
+        open.remove(session);
+        reconnects.increment();
+        session.close();
+    }
+
+    @FunctionalInterface
+    interface SessionCall {
+        void run(Session session) throws Exception;
+    }
+
+    static final class Session {
+        private final int shardIndex;
+        private final Connection conn;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private Session(int shardIndex, Connection conn) {
+            this.shardIndex = shardIndex;
+            this.conn = conn;
+        }
+
+        Connection connection() {
+            return conn;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = conn.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            return ps;
+        }
+
+        CallableStatement prepareCall(String sql) throws SQLException {
+            PreparedStatement cs = statements.get(sql);
+            if (cs == null) {
+                cs = conn.prepareCall(sql);
+                statements.put(sql, cs);
+            }
+            return (CallableStatement) cs;
+        }
+
+        private void close() {
+            try (Connection c = conn) {
+                c.rollback();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "STICKY_CLOSE_FAIL msg={0}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+final class BatchedSeqWriter implements AutoCloseable {
+
+    private final PoolDataSource db;
+    private final int rowsPerExecute;
+    private final int executesPerCommit;
+
+    private Connection conn;
+    private PreparedStatement ps;
+    private int rows;
+    private int uncommitted;
+    private int executes;
+
+    BatchedSeqWriter(PoolDataSource db, int rowsPerExecute, int executesPerCommit) {
+        if (rowsPerExecute <= 0 || executesPerCommit <= 0) throw new IllegalArgumentException();
+        this.db = db;
+        this.rowsPerExecute = rowsPerExecute;
+        this.executesPerCommit = executesPerCommit;
+    }
+
+    void add() throws Exception {
+        try {
+            if (conn == null) {
+                long t0 = System.nanoTime();
+                conn = db.getConnection();
+                RunMetrics.BORROW.recordSince(t0);
+                conn.setAutoCommit(false);
+                ps = conn.prepareStatement(GenUtil.INSERT_SQL_ROW);
+            }
+            if (GenUtil.PAYLOAD != null) GenUtil.PAYLOAD.bind(ps, 1);
+            ps.addBatch();
+        } catch (Exception e) {
+            release(true);
+            throw e;
+        }
+        if (++rows == rowsPerExecute) execute();
+    }
+
+    @Override
+    public void close() throws Exception {
+        execute();
+        commit();
+    }
+
+    private void execute() throws Exception {
+        if (rows == 0) return;
+
+        try {
+            long t0 = System.nanoTime();
+            ps.executeBatch();
+            RunMetrics.EXECUTE.recordSince(t0);
+        } catch (Exception e) {
+            release(true);
+            throw e;
+        }
+
+        uncommitted += rows;
+        rows = 0;
+        if (++executes == executesPerCommit) commit();
+    }
+
+    private void commit() throws Exception {
+        if (conn == null) return;
+
+        boolean committed = false;
+        try {
+            long t0 = System.nanoTime();
+            conn.commit();
+            RunMetrics.COMMIT.recordSince(t0);
+            RunMetrics.rowsWritten(uncommitted);
+            RunErrors.succeeded();
+            committed = true;
+        } finally {
+            release(!committed);
+        }
+    }
+
+    private void release(boolean rollback) throws Exception {
+        Connection c = conn;
+        PreparedStatement p = ps;
+        conn = null;
+        ps = null;
+        rows = 0;
+        uncommitted = 0;
+        executes = 0;
+        try (Connection closeConn = c; PreparedStatement closePs = p) {
+            if (rollback && closeConn != null) closeConn.rollback();
+        }
+    }
+}
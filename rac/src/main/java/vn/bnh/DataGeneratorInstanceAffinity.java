@@ -0,0 +1,215 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Workers pinned round-robin to one pool per RAC instance, each inserting CUST_IDs only that instance generates.
+public final class DataGeneratorInstanceAffinity {
+
+    private static final Logger LOGGER = Logger.getLogger(DataGeneratorInstanceAffinity.class.getName());
+    private static final String MODE = "instance_affinity";
+
+    private static final String SQL_INSTANCES = "SELECT INST_ID, INSTANCE_NAME FROM GV$INSTANCE WHERE STATUS = 'OPEN' ORDER BY INST_ID";
+    private static final String SQL_INSTANCE_NAME = "SELECT SYS_CONTEXT('USERENV', 'INSTANCE_NAME') FROM DUAL";
+    private static final String SQL_RANGE_MAX = "SELECT MAX(CUST_ID) FROM CUSTOMER_T1 WHERE CUST_ID BETWEEN ? AND ?";
+    private static final Pattern EZCONNECT = Pattern.compile("jdbc:oracle:thin:@(?://)?([^:/()]+)(?::(\\d+))?/([^:/?()]+).*");
+
+    // Range keys: INST_ID in bits 50-62, MACHINE_ID in bits 40-49, a per-instance counter in bits 0-39.
+    private static final int INSTANCE_SHIFT = 50;
+    private static final int MACHINE_SHIFT = 40;
+    private static final long COUNTER_MASK = (1L << MACHINE_SHIFT) - 1;
+
+    private DataGeneratorInstanceAffinity() {
+    }
+
+    enum KeyMode {RANGE, SNOWFLAKE}
+
+    public static void run() {
+        try {
+            int threads = Integer.parseInt(GenUtil.env("THREADS"));
+            long duration = Long.parseLong(GenUtil.env("DURATION"));
+            KeyMode keyMode = KeyMode.valueOf(GenUtil.env("AFFINITY_KEYS", "range").toUpperCase());
+            int machineId = Integer.parseInt(GenUtil.env("MACHINE_ID", "0"));
+            boolean sticky = Boolean.parseBoolean(GenUtil.env("STICKY_CONNECTIONS", "false"));
+            if ((machineId >> (INSTANCE_SHIFT - MACHINE_SHIFT)) != 0) throw new IllegalStateException("MACHINE_ID must fit in " + (INSTANCE_SHIFT - MACHINE_SHIFT) + " bits");
+
+            LOGGER.log(Level.INFO, "START mode={0} threads={1} duration_s={2} keys={3}", new Object[]{MODE, threads, duration, keyMode.name().toLowerCase()});
+
+            PoolDataSource db = GenUtil.pool("UCP_RAC", GenUtil.env("RAC_URL"), GenUtil.KEYS == null ? 1 : Env.getInt("VERIFY_THREADS", 8));
+            List<Lane> lanes = openLanes(db, LoadLoop.poolSize(threads, sticky), keyMode, machineId);
+
+            AtomicInteger nextLane = new AtomicInteger();
+            ThreadLocal<Lane> lane = ThreadLocal.withInitial(() -> {
+                Lane assigned = lanes.get(Math.floorMod(nextLane.getAndIncrement(), lanes.size()));
+                assigned.workers.increment();
+                return assigned;
+            });
+            ThreadLocal<StickyStatement> statements = ThreadLocal.withInitial(() -> new StickyStatement(lane.get().pool, GenUtil.INSERT_SQL_ID));
+
+            Map<String, Long> waitsBefore = GenUtil.clusterWaitMicros(db);
+            long startNs = System.nanoTime();
+            GenUtil.runLoop(MODE, threads, duration, () -> {
+                Lane l = lane.get();
+                long opNs = System.nanoTime();
+                try {
+                    if (sticky) GenUtil.insertWithId(statements.get(), l.nextKey());
+                    else GenUtil.insertWithId(l.pool, l.nextKey());
+                    l.tracker.recordSince(opNs);
+                    l.ops.increment();
+                } catch (Exception e) {
+                    l.errors.increment();
+                    RunErrors.record(LOGGER, MODE, e);
+                }
+            }, () -> {
+                if (sticky) statements.get().close();
+            });
+            long elapsedNs = System.nanoTime() - startNs;
+            GenUtil.logClusterWaits(MODE, waitsBefore, GenUtil.clusterWaitMicros(db), elapsedNs);
+
+            for (Lane l : lanes) {
+                long ops = l.ops.sum();
+                LOGGER.log(Level.INFO, "INSTANCE_SUMMARY mode={0} instance={1} workers={2} ops={3} ops_s={4} errors={5} keys={6}", new Object[]{MODE, l.instanceName, String.valueOf(l.workers.sum()), String.valueOf(ops), String.valueOf(Math.round(ops / (elapsedNs / 1e9))), String.valueOf(l.errors.sum()), l.describeKeys()});
+            }
+
+            GenUtil.verifyWrittenKeys(MODE, db);
+            LOGGER.log(Level.INFO, "END mode={0}", MODE);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "FATAL mode=" + MODE, e);
+            System.exit(1);
+        }
+    }
+
+    private static List<Lane> openLanes(PoolDataSource db, int connections, KeyMode keyMode, int machineId) throws Exception {
+        List<String[]> instances = discoverInstances(db);
+        if (instances.isEmpty()) throw new IllegalStateException("No open instances found and RAC_INSTANCES is not set");
+
+        int perInstance = (connections + instances.size() - 1) / instances.size();
+        int nodeStride = Integer.parseInt(GenUtil.env("AFFINITY_NODE_STRIDE", "8"));
+        List<Lane> lanes = new ArrayList<>(instances.size());
+        for (String[] instance : instances) {
+            int instId = Integer.parseInt(instance[0]);
+            String name = instance[1];
+            String url = GenUtil.env("RAC_URL_" + name.toUpperCase(), null);
+            if (url == null) url = instanceUrl(GenUtil.env("RAC_URL"), name);
+
+            PoolDataSource pool = GenUtil.pool("UCP_RAC_" + name, url, perInstance);
+            checkAffinity(pool, name);
+
+            Lane lane = new Lane(name, pool);
+            if (keyMode == KeyMode.RANGE) {
+                lane.rangeStart = ((long) instId << INSTANCE_SHIFT) | ((long) machineId << MACHINE_SHIFT);
+                lane.counter.set(resumePoint(db, lane.rangeStart));
+            } else {
+                if (instId > nodeStride) throw new IllegalStateException("INST_ID " + instId + " exceeds AFFINITY_NODE_STRIDE " + nodeStride);
+                lane.nodeId = machineId * nodeStride + instId - 1;
+                lane.snowflake = new SnowflakeGenerator(lane.nodeId);
+            }
+            MetricsRegistry.counter("instance_ops_total", "Inserts committed per pinned RAC instance", lane.ops::sum, "instance", name);
+            lanes.add(lane);
+            LOGGER.log(Level.INFO, "AFFINITY_POOL instance={0} inst_id={1} pool_size={2} url={3} keys={4}", new Object[]{name, String.valueOf(instId), perInstance, url, lane.describeKeys()});
+        }
+        return lanes;
+    }
+
+    // RAC_INSTANCES narrows the set; without GV$INSTANCE access it supplies the names and their position stands in for INST_ID.
+    private static List<String[]> discoverInstances(PoolDataSource db) {
+        String configured = GenUtil.env("RAC_INSTANCES", null);
+        List<String> wanted = configured == null ? null : Arrays.asList(configured.split("\\s*,\\s*"));
+
+        List<String[]> instances = new ArrayList<>();
+        try (Connection conn = db.getConnection(); PreparedStatement ps = conn.prepareStatement(SQL_INSTANCES); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String name = rs.getString(2);
+                if (wanted == null || wanted.contains(name)) instances.add(new String[]{rs.getString(1), name});
+            }
+            return instances;
+        } catch (SQLException e) {
+            if (wanted == null) throw new IllegalStateException("Cannot read GV$INSTANCE; set RAC_INSTANCES", e);
+            LOGGER.log(Level.WARNING, "AFFINITY_DISCOVERY_FAIL fallback=RAC_INSTANCES msg={0}", e.getMessage());
+            for (int i = 0; i < wanted.size(); i++) instances.add(new String[]{String.valueOf(i + 1), wanted.get(i)});
+            return instances;
+        }
+    }
+
+    // Adds INSTANCE_NAME to CONNECT_DATA so the listener hands the session to that instance only.
+    static String instanceUrl(String url, String instanceName) {
+        int connectData = url.toUpperCase().indexOf("(CONNECT_DATA=");
+        if (connectData >= 0) {
+            int at = connectData + "(CONNECT_DATA=".length();
+            return url.substring(0, at) + "(INSTANCE_NAME=" + instanceName + ")" + url.substring(at);
+        }
+        Matcher m = EZCONNECT.matcher(url);
+        if (!m.matches()) throw new IllegalStateException("Cannot derive an instance URL from RAC_URL; set RAC_URL_" + instanceName.toUpperCase());
+        String port = m.group(2) == null ? "1521" : m.group(2);
+        return "jdbc:oracle:thin:@(DESCRIPTION=(ADDRESS=(PROTOCOL=TCP)(HOST=" + m.group(1) + ")(PORT=" + port + "))(CONNECT_DATA=(SERVICE_NAME=" + m.group(3) + ")(INSTANCE_NAME=" + instanceName + ")))";
+    }
+
+    private static void checkAffinity(PoolDataSource pool, String expected) throws SQLException {
+        try (Connection conn = pool.getConnection(); PreparedStatement ps = conn.prepareStatement(SQL_INSTANCE_NAME); ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            String actual = rs.getString(1);
+            if (!expected.equalsIgnoreCase(actual)) {
+                LOGGER.log(Level.WARNING, "AFFINITY_MISMATCH expected={0} actual={1}", new Object[]{expected, actual});
+            }
+        }
+    }
+
+    // Continues after the highest key an earlier run left in this instance's range.
+    private static long resumePoint(PoolDataSource db, long rangeStart) throws SQLException {
+        try (Connection conn = db.getConnection(); PreparedStatement ps = conn.prepareStatement(SQL_RANGE_MAX)) {
+            ps.setLong(1, rangeStart);
+            ps.setLong(2, rangeStart | COUNTER_MASK);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                long max = rs.getLong(1);
+                return rs.wasNull() ? 0 : (max & COUNTER_MASK) + 1;
+            }
+        }
+    }
+
+    private static final class Lane {
+        final String instanceName;
+        final PoolDataSource pool;
+        final LatencyTracker tracker;
+        final LongAdder ops = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder workers = new LongAdder();
+
+        final AtomicLong counter = new AtomicLong();
+        long rangeStart;
+        SnowflakeGenerator snowflake;
+        int nodeId;
+
+        Lane(String instanceName, PoolDataSource pool) {
+            this.instanceName = instanceName;
+            this.pool = pool;
+            this.tracker = RunMetrics.tracker("instance_" + instanceName);
+        }
+
+        long nextKey() {
+            if (snowflake != null) return snowflake.nextId();
+            long next = counter.getAndIncrement();
+            if (next > COUNTER_MASK) throw new IllegalStateException("Key range exhausted for " + instanceName);
+            return rangeStart | next;
+        }
+
+        String describeKeys() {
+            return snowflake != null ? "snowflake_node:" + nodeId : "range_from:" + (rangeStart | counter.get());
+        }
+    }
+}
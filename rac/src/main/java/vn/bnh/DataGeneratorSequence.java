@@ -2,6 +2,9 @@ package vn.bnh;
 
 import oracle.ucp.jdbc.PoolDataSource;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,21 +22,123 @@ public final class DataGeneratorSequence {
 
             LOGGER.log(Level.INFO, "START mode=sequence threads={0} duration_s={1}", new Object[]{threads, duration});
 
+            int rowsPerExecute = Integer.parseInt(GenUtil.env("ROWS_PER_EXECUTE", "1"));
+            int executesPerCommit = Integer.parseInt(GenUtil.env("EXECUTES_PER_COMMIT", "1"));
+            boolean sticky = Boolean.parseBoolean(GenUtil.env("STICKY_CONNECTIONS", "false"));
+            // Sticky statements and batched writers keep their connection per worker.
+            PoolDataSource db = GenUtil.pool(LoadLoop.poolSize(threads, sticky || rowsPerExecute != 1 || executesPerCommit != 1));
+
+            Map<String, Long> waitsBefore = GenUtil.clusterWaitMicros(db);
+            long startNs = System.nanoTime();
+
+            if (rowsPerExecute == 1 && executesPerCommit == 1 && sticky) {
+                ThreadLocal<StickyStatement> statements = ThreadLocal.withInitial(() -> new StickyStatement(db, GenUtil.INSERT_SQL_ROW, GenUtil.KEY_COLUMNS));
+
+                GenUtil.runLoop("sequence", threads, duration, () -> {
+                    try {
+                        GenUtil.insertSeq(statements.get());
+                    } catch (Exception e) {
+                        fail(e);
+                    }
+                }, () -> statements.get().close());
+
+                LOGGER.log(Level.INFO, "STICKY_SESSIONS mode=sequence opened={0} reconnects={1}", new Object[]{StickyStatement.OPENED.sum(), StickyStatement.RECONNECTS.sum()});
+            } else if (rowsPerExecute == 1 && executesPerCommit == 1) {
+                GenUtil.runLoop("sequence", threads, duration, () -> {
+                    try {
+                        GenUtil.insertSeq(db);
+                    } catch (Exception e) {
+                        fail(e);
+                    }
+                });
+            } else {
+                LOGGER.log(Level.INFO, "BATCHED_INSERTS mode=sequence rows_per_execute={0} executes_per_commit={1}", new Object[]{rowsPerExecute, executesPerCommit});
+                // The driver does not return identity values from executeBatch, so batched rows cannot be tracked.
+                if (GenUtil.KEYS != null) LOGGER.log(Level.WARNING, "KEY_TRACKER_UNSUPPORTED mode=sequence reason=batched_identity_inserts");
+                ThreadLocal<BatchedSeqWriter> writers = ThreadLocal.withInitial(() -> new BatchedSeqWriter(db, rowsPerExecute, executesPerCommit));
+
+                GenUtil.runLoop("sequence", threads, duration, () -> {
+                    try {
+                        writers.get().add();
+                    } catch (Exception e) {
+                        fail(e);
+                    }
+                }, () -> {
+                    try {
+                        writers.get().close();
+                    } catch (Exception e) {
+                        fail(e);
+                    }
+                });
+            }
+
+            GenUtil.logClusterWaits("sequence", waitsBefore, GenUtil.clusterWaitMicros(db), System.nanoTime() - startNs);
+            GenUtil.verifyWrittenKeys("sequence", db);
+            LOGGER.log(Level.INFO, "END mode=sequence");
+        } catch (Exception e) {
+            Logger.getLogger(DataGeneratorSequence.class.getName()).log(Level.SEVERE, "FATAL mode=sequence", e);
+            System.exit(1);
+        }
+    }
+
+    // Identity inserts over asynchronous connections: each worker keeps one session with ASYNC_IN_FLIGHT autocommit inserts outstanding.
+    public static void runAsync() {
+        try {
+            int threads = Integer.parseInt(GenUtil.env("THREADS"));
+            long duration = Long.parseLong(GenUtil.env("DURATION"));
+            int inFlight = AsyncStatementPipeline.inFlightFromEnv();
+
+            LOGGER.log(Level.INFO, "START mode=sequence_async threads={0} duration_s={1} in_flight={2}", new Object[]{threads, duration, inFlight});
+            // Completions do not fetch generated identity values, so there is no key to record.
+            if (GenUtil.KEYS != null) LOGGER.log(Level.WARNING, "KEY_TRACKER_UNSUPPORTED mode=sequence_async reason=async_identity_inserts");
+
+            // Workers hold their session across operations, so the pool needs one per worker regardless of MAX_IN_FLIGHT.
             PoolDataSource db = GenUtil.pool(threads);
+            AsyncStatementPipeline.KeyBinder binder = (ps, key) -> {
+                if (GenUtil.PAYLOAD != null) GenUtil.PAYLOAD.bind(ps, 1);
+            };
+            ThreadLocal<AsyncStatementPipeline> pipelines = new ThreadLocal<>();
 
-            GenUtil.runLoop(threads, duration, () -> {
+            Map<String, Long> waitsBefore = GenUtil.clusterWaitMicros(db);
+            long startNs = System.nanoTime();
+            GenUtil.runLoop("sequence_async", threads, duration, () -> {
+                AsyncStatementPipeline pipeline = pipelines.get();
                 try {
-                    GenUtil.insertSeq(db);
+                    if (pipeline == null || pipeline.broken()) {
+                        pipeline = reopen(db, pipeline, inFlight);
+                        pipelines.set(pipeline);
+                    }
+                    pipeline.submit(0, binder);
                 } catch (Exception e) {
-                    LOGGER.log(Level.SEVERE, "STOP mode=sequence", e);
-                    System.exit(1);
+                    RunErrors.record(LOGGER, "sequence_async", e);
                 }
+            }, () -> {
+                AsyncStatementPipeline pipeline = pipelines.get();
+                if (pipeline != null) pipeline.close();
+                pipelines.remove();
             });
-
-            LOGGER.log(Level.INFO, "END mode=sequence");
+            long elapsedNs = System.nanoTime() - startNs;
+            AsyncStatementPipeline.logSummary("sequence_async", inFlight, elapsedNs);
+            GenUtil.logClusterWaits("sequence_async", waitsBefore, GenUtil.clusterWaitMicros(db), elapsedNs);
+            LOGGER.log(Level.INFO, "END mode=sequence_async");
         } catch (Exception e) {
-            Logger.getLogger(DataGeneratorSequence.class.getName()).log(Level.SEVERE, "FATAL mode=sequence", e);
+            LOGGER.log(Level.SEVERE, "FATAL mode=sequence_async", e);
             System.exit(1);
         }
     }
+
+    private static AsyncStatementPipeline reopen(PoolDataSource db, AsyncStatementPipeline old, int inFlight) throws Exception {
+        if (old != null) old.close();
+        Connection conn = db.getConnection();
+        try {
+            return new AsyncStatementPipeline("sequence_async", conn, GenUtil.INSERT_SQL_ROW, inFlight, null);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    private static void fail(Exception e) {
+        RunErrors.record(LOGGER, "sequence", e);
+    }
 }
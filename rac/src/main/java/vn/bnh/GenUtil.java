@@ -5,54 +5,212 @@ import oracle.ucp.jdbc.PoolDataSourceFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 final class GenUtil {
 
     static final String INSERT_SQL_SEQ = "INSERT INTO CUSTOMER_T1 (CUST_TYPE, NAME, BIRTH_DATE, SEX, NATIONALITY, VIP, STATUS, AREA_CODE, PROVINCE, DISTRICT, PRECINCT, STREET_BLOCK, STREET, STREET_NAME, STREET_BLOCK_NAME, HOME, ADDRESS, CREATE_USER, CREATE_DATETIME, UPDATE_DATETIME, UPDATE_USER, DESCRIPTION, UPDATE_NUMBER2, LAST_MODIFIED, PARENT_ID) VALUES ('VIE', 'TEST DIA BAN', TO_DATE('2025-06-05 09:22:51', 'YYYY-MM-DD HH24:MI:SS'), 'M', 'Việt Nam', NULL, '1', 'HNI0400060', 'HNI', NULL, '040', '0060', NULL, NULL, 'Tổ 1-Bồ Đề', NULL, 'Tổ 1-Bồ Đề, Phường Bồ Đề Thành phố Hà Nội', 'VTT1', TO_DATE('2025-06-12 14:02:28', 'YYYY-MM-DD HH24:MI:SS'), TO_DATE('2025-10-14 18:17:39', 'YYYY-MM-DD HH24:MI:SS'), 'VTT1', NULL, NULL, NULL, NULL)";
 
+    static final CustomerPayloadGenerator PAYLOAD = CustomerPayloadGenerator.fromEnv();
+    static final String INSERT_SQL_ROW = PAYLOAD == null ? INSERT_SQL_SEQ : "INSERT INTO CUSTOMER_T1 (" + CustomerPayloadGenerator.COLUMNS + ") VALUES (" + CustomerPayloadGenerator.BIND_MARKERS + ")";
+
+    // Same row with a client-supplied CUST_ID, for modes that generate their own keys; CUST_ID must not be GENERATED ALWAYS.
+    static final String INSERT_SQL_ID = INSERT_SQL_ROW.replace("CUSTOMER_T1 (", "CUSTOMER_T1 (CUST_ID, ").replace("VALUES (", "VALUES (?, ");
+
+    static final WrittenKeyStore KEYS = WrittenKeyStore.fromEnv();
+    // Identity values are only known to the client when the driver returns them, so ask for CUST_ID while tracking keys.
+    static final String[] KEY_COLUMNS = KEYS == null ? null : new String[]{"CUST_ID"};
+    static final String SQL_CLUSTER_WAITS = "SELECT i.INSTANCE_NAME, NVL(SUM(e.TIME_WAITED_MICRO), 0) FROM GV$INSTANCE i LEFT JOIN GV$SYSTEM_EVENT e ON e.INST_ID = i.INST_ID AND e.WAIT_CLASS = 'Cluster' GROUP BY i.INSTANCE_NAME ORDER BY 1";
+    static final String SQL_VERIFY_CUSTOMER = "SELECT SYS_CONTEXT('USERENV', 'INSTANCE_NAME'), (SELECT COUNT(*) FROM CUSTOMER_T1 WHERE CUST_ID = ?) FROM DUAL";
+
+    private static final Logger LOGGER = Logger.getLogger(GenUtil.class.getName());
+    private static final RetryPolicy RETRY = RetryPolicy.fromEnv();
+
     private GenUtil() {
     }
 
     static String env(String k) {
-        String v = System.getenv(k);
-        if (v == null || v.isEmpty()) throw new IllegalStateException("Missing env: " + k);
-        return v;
+        return Env.require(k);
+    }
+
+    static String env(String k, String def) {
+        return Env.get(k, def);
     }
 
     static PoolDataSource pool(int threads) throws Exception {
+        return pool(null, env("RAC_URL"), threads);
+    }
+
+    static PoolDataSource pool(String name, String url, int threads) throws Exception {
         PoolDataSource pds = PoolDataSourceFactory.getPoolDataSource();
         pds.setConnectionFactoryClassName("oracle.jdbc.pool.OracleDataSource");
-        pds.setURL(env("RAC_URL"));
+        if (name != null) pds.setConnectionPoolName(name);
+        pds.setURL(url);
         pds.setUser(env("RAC_USERNAME"));
         pds.setPassword(env("RAC_PASSWORD"));
         pds.setInitialPoolSize(threads);
         pds.setMinPoolSize(threads);
         pds.setMaxPoolSize(threads);
+        pds.setMaxStatements(Integer.parseInt(env("STATEMENT_CACHE_SIZE", "16")));
+        PoolMetrics.register(pds);
         return pds;
     }
 
     static void insertSeq(PoolDataSource db) throws Exception {
-        try (Connection conn = db.getConnection(); PreparedStatement ps = conn.prepareStatement(INSERT_SQL_SEQ)) {
+        RETRY.call(null, () -> {
+            insertOnce(db);
+            return null;
+        }, null);
+    }
+
+    static void insertSeq(StickyStatement sticky) throws Exception {
+        RETRY.call(null, () -> {
+            insertOnce(sticky);
+            return null;
+        }, null);
+    }
+
+    static void insertWithId(PoolDataSource db, long customerId) throws Exception {
+        RETRY.call(null, () -> {
+            long startNs = System.nanoTime();
+            try (Connection conn = db.getConnection()) {
+                RunMetrics.BORROW.recordSince(startNs);
+                conn.setAutoCommit(false);
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL_ID)) {
+                    execute(ps, customerId);
+                }
+            }
+            return null;
+        }, null);
+    }
+
+    static void insertWithId(StickyStatement sticky, long customerId) throws Exception {
+        RETRY.call(null, () -> {
+            try {
+                execute(sticky.get(), customerId);
+            } catch (SQLException e) {
+                sticky.discard();
+                throw e;
+            }
+            return null;
+        }, null);
+    }
+
+    private static void execute(PreparedStatement ps, long customerId) throws SQLException {
+        ps.setLong(1, customerId);
+        if (PAYLOAD != null) PAYLOAD.bind(ps, 2);
+        long startNs = System.nanoTime();
+        ps.executeUpdate();
+        RunMetrics.EXECUTE.recordSince(startNs);
+
+        startNs = System.nanoTime();
+        ps.getConnection().commit();
+        RunMetrics.COMMIT.recordSince(startNs);
+        RunMetrics.rowsWritten(1);
+        if (KEYS != null) KEYS.record(customerId);
+    }
+
+    private static void insertOnce(PoolDataSource db) throws Exception {
+        long startNs = System.nanoTime();
+        try (Connection conn = db.getConnection()) {
+            RunMetrics.BORROW.recordSince(startNs);
             conn.setAutoCommit(false);
+
+            try (PreparedStatement ps = prepareInsert(conn)) {
+                if (PAYLOAD != null) PAYLOAD.bind(ps, 1);
+
+                startNs = System.nanoTime();
+                ps.executeUpdate();
+                RunMetrics.EXECUTE.recordSince(startNs);
+                long key = generatedKey(ps);
+
+                startNs = System.nanoTime();
+                conn.commit();
+                RunMetrics.COMMIT.recordSince(startNs);
+                RunMetrics.rowsWritten(1);
+                if (key != 0) KEYS.record(key);
+            }
+        }
+    }
+
+    // A failed statement's connection is dropped and the error rethrown so RETRY decides whether to try again.
+    private static void insertOnce(StickyStatement sticky) throws Exception {
+        PreparedStatement ps = sticky.get();
+        try {
+            if (PAYLOAD != null) PAYLOAD.bind(ps, 1);
+            long startNs = System.nanoTime();
             ps.executeUpdate();
-            conn.commit();
+            RunMetrics.EXECUTE.recordSince(startNs);
+            long key = generatedKey(ps);
+
+            startNs = System.nanoTime();
+            ps.getConnection().commit();
+            RunMetrics.COMMIT.recordSince(startNs);
+            RunMetrics.rowsWritten(1);
+            if (key != 0) KEYS.record(key);
+        } catch (SQLException e) {
+            sticky.discard();
+            throw e;
         }
     }
 
-    static void runLoop(int threads, long durationSeconds, Runnable once) throws Exception {
-        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
-        ExecutorService workers = Executors.newFixedThreadPool(threads);
+    static PreparedStatement prepareInsert(Connection conn) throws SQLException {
+        return KEY_COLUMNS == null ? conn.prepareStatement(INSERT_SQL_ROW) : conn.prepareStatement(INSERT_SQL_ROW, KEY_COLUMNS);
+    }
 
-        for (int i = 0; i < threads; i++) {
-            workers.submit(() -> {
-                while (System.nanoTime() < deadline) once.run();
-            });
+    // Zero when key tracking is off.
+    private static long generatedKey(PreparedStatement ps) throws SQLException {
+        if (KEY_COLUMNS == null) return 0;
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            return rs.next() ? rs.getLong(1) : 0;
         }
+    }
+
+    // Cumulative Cluster-class wait time per instance, or null when the user cannot read GV$ views.
+    static Map<String, Long> clusterWaitMicros(PoolDataSource db) {
+        Map<String, Long> waits = new TreeMap<>();
+        try (Connection conn = db.getConnection(); PreparedStatement ps = conn.prepareStatement(SQL_CLUSTER_WAITS); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) waits.put(rs.getString(1), rs.getLong(2));
+            return waits;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "CLUSTER_WAITS_UNAVAILABLE msg={0}", e.getMessage());
+            return null;
+        }
+    }
+
+    static void logClusterWaits(String mode, Map<String, Long> before, Map<String, Long> after, long elapsedNs) {
+        if (before == null || after == null) return;
+        for (Map.Entry<String, Long> e : after.entrySet()) {
+            long waitedUs = e.getValue() - before.getOrDefault(e.getKey(), 0L);
+            LOGGER.log(Level.INFO, "CLUSTER_WAITS mode={0} instance={1} wait_ms={2} wait_ms_per_s={3}", new Object[]{mode, e.getKey(), String.valueOf(waitedUs / 1000), String.valueOf(Math.round(waitedUs / 1000.0 / (elapsedNs / 1e9)))});
+        }
+    }
+
+    static void verifyWrittenKeys(String mode, PoolDataSource db) throws Exception {
+        if (KEYS == null) return;
+        KEYS.logStats(mode);
+        WrittenKeyVerifier.runIfConfigured(mode, KEYS, key -> {
+            try (Connection conn = db.getConnection(); PreparedStatement ps = conn.prepareStatement(SQL_VERIFY_CUSTOMER)) {
+                ps.setLong(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return new WrittenKeyVerifier.Result(rs.getString(1), rs.getLong(2) > 0);
+                }
+            }
+        });
+    }
+
+    static void runLoop(String mode, int threads, long durationSeconds, Runnable once) throws Exception {
+        runLoop(mode, threads, durationSeconds, once, () -> {
+        });
+    }
 
-        workers.shutdown();
-        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    static void runLoop(String mode, int threads, long durationSeconds, Runnable once, Runnable workerExit) throws Exception {
+        LoadLoop.run(mode, threads, durationSeconds, once, workerExit);
     }
 }
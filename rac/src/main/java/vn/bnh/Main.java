@@ -1,18 +1,39 @@
 package vn.bnh;
 
+import java.util.Arrays;
+
 public final class Main {
 
     private Main() {
     }
 
     public static void main(String[] args) {
-        if (args.length == 0) throw new IllegalArgumentException("Usage: --sequence");
+        if (args.length == 0) throw new IllegalArgumentException("Usage: --sequence | --sequence-async | --instance-affinity | --merge-metrics <log>...");
 
         if ("--sequence".equals(args[0])) {
             DataGeneratorSequence.run();
             return;
         }
 
-        throw new IllegalArgumentException("Usage: --sequence");
+        if ("--sequence-async".equals(args[0])) {
+            DataGeneratorSequence.runAsync();
+            return;
+        }
+
+        if ("--instance-affinity".equals(args[0])) {
+            DataGeneratorInstanceAffinity.run();
+            return;
+        }
+
+        if ("--merge-metrics".equals(args[0])) {
+            try {
+                RunMetrics.mergeSummaries(Arrays.copyOfRange(args, 1, args.length));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+
+        throw new IllegalArgumentException("Usage: --sequence | --sequence-async | --instance-affinity | --merge-metrics <log>...");
     }
 }
@@ -0,0 +1,60 @@
+package vn.bnh;
+
+import oracle.ucp.jdbc.PoolDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+final class StickyStatement implements AutoCloseable {
+
+    static final LongAdder OPENED = new LongAdder();
+    static final LongAdder RECONNECTS = new LongAdder();
+
+    private final PoolDataSource db;
+    private final String sql;
+    private final String[] keyColumns;
+
+    private Connection conn;
+    private PreparedStatement ps;
+
+    StickyStatement(PoolDataSource db, String sql) {
+        this(db, sql, null);
+    }
+
+    StickyStatement(PoolDataSource db, String sql, String[] keyColumns) {
+        this.db = db;
+        this.sql = sql;
+        this.keyColumns = keyColumns;
+    }
+
+    PreparedStatement get() throws SQLException {
+        if (ps == null) {
+            long t0 = System.nanoTime();
+            conn = db.getConnection();
+            RunMetrics.BORROW.recordSince(t0);
+            conn.setAutoCommit(false);
+            ps = keyColumns == null ? conn.prepareStatement(sql) : conn.prepareStatement(sql, keyColumns);
+            OPENED.increment();
+        }
+        return ps;
+    }
+
+    void discard() {
+        RECONNECTS.increment();
+        close();
+    }
+
+    @Override
+    public void close() {
+        Connection c = conn;
+        conn = null;
+        ps = null;
+        if (c == null) return;
+        try (Connection closeConn = c) {
+            closeConn.rollback();
+        } catch (SQLException ignored) {
+        }
+    }
+}